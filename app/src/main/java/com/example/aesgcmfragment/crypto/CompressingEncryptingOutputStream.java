@@ -0,0 +1,98 @@
+package com.example.aesgcmfragment.crypto;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * {@link StreamingAead} encryption with an adaptive Deflate stage in front. The first
+ * {@link Compression#SAMPLE_SIZE} bytes are buffered and checked with
+ * {@link Compression#worthCompressing}; only then is the stream header written, with
+ * {@link StreamingAead#FLAG_DEFLATE} set if the rest of the stream is compressed.
+ * Read it back with {@link StreamingAead#newDecompressingStream}.
+ */
+public final class CompressingEncryptingOutputStream extends OutputStream {
+    private final SecretKey dek;
+    private final byte[] aad;
+    private final int segmentSize;
+    private final OutputStream out;
+    private byte[] sample = new byte[Compression.SAMPLE_SIZE];
+    private int sampleLen;
+    private OutputStream sink;       // null until the compression decision is made
+    private Deflater deflater;       // null when not compressing
+    private boolean closed;
+
+    CompressingEncryptingOutputStream(SecretKey dek, OutputStream out, byte[] aad, int segmentSize) {
+        if (segmentSize < StreamingAead.MIN_SEGMENT_SIZE || segmentSize > StreamingAead.MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segmentSize out of range: " + segmentSize);
+        }
+        this.dek = dek;
+        this.aad = aad;
+        this.segmentSize = segmentSize;
+        this.out = out;
+    }
+
+    /** Whether data is being deflated; only meaningful after {@link Compression#SAMPLE_SIZE} bytes or close. */
+    public boolean compressed() {
+        return deflater != null;
+    }
+
+    @Override public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("stream closed");
+        if ((off | len) < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (sink == null) {
+            int n = Math.min(len, Compression.SAMPLE_SIZE - sampleLen);
+            System.arraycopy(b, off, sample, sampleLen, n);
+            sampleLen += n;
+            off += n;
+            len -= n;
+            if (sampleLen < Compression.SAMPLE_SIZE) return;
+            start();
+        }
+        if (len > 0) sink.write(b, off, len);
+    }
+
+    /** Flushes completed segments only, like {@link SegmentEncryptingOutputStream#flush()}. */
+    @Override public void flush() throws IOException {
+        if (closed) throw new IOException("stream closed");
+        if (sink != null) sink.flush();
+    }
+
+    @Override public void close() throws IOException {
+        if (closed) return;
+        try {
+            if (sink == null) start();
+            sink.close();   // finishes the deflater, then seals the final segment
+        } finally {
+            closed = true;
+            if (deflater != null) deflater.end();
+        }
+    }
+
+    private void start() throws IOException {
+        boolean compress = Compression.worthCompressing(sample, 0, sampleLen);
+        SegmentEncryptingOutputStream enc;
+        try {
+            enc = new SegmentEncryptingOutputStream(dek,
+                    StreamingAead.Header.create(compress ? StreamingAead.FLAG_DEFLATE : 0, segmentSize), aad, out);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("cannot start encryption", e);
+        }
+        if (compress) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            sink = new DeflaterOutputStream(enc, deflater, 8192);
+        } else {
+            sink = enc;
+        }
+        sink.write(sample, 0, sampleLen);
+        sample = null;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.aesgcmfragment.crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional Deflate stage applied before encryption (ciphertext does not compress, so it has to
+ * happen first). Compression runs at {@link Deflater#BEST_SPEED}. It is only used when a cheap
+ * trial on a sample of the input shrinks it to at most {@link #MAX_RATIO} of its size, so
+ * already-compressed or random data costs one small trial instead of a full pass.
+ *
+ * <p>Whether a payload was compressed is recorded in an authenticated flag:
+ * {@link Envelope#FLAG_DEFLATE} for one-shot envelopes, {@link StreamingAead#FLAG_DEFLATE} in
+ * the stream header. Data is in zlib format. Deflaters and inflaters are reused per thread.
+ */
+public final class Compression {
+    public static final double MAX_RATIO = 0.9;
+    static final int MIN_SIZE = 256;           // below this the zlib overhead eats the gain
+    static final int SAMPLE_SIZE = 4 * 1024;   // bytes trial-compressed to estimate the ratio
+    static final int SAMPLE_SLICES = 4;
+
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<>();
+    private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<>();
+
+    private Compression() {}
+
+    /**
+     * Estimates from up to {@link #SAMPLE_SIZE} bytes, taken as evenly spaced slices so the
+     * decision reflects the whole input rather than just a binary or text prefix.
+     */
+    public static boolean worthCompressing(byte[] b, int off, int len) {
+        if (len < MIN_SIZE) return false;
+        byte[] sample;
+        if (len <= SAMPLE_SIZE) {
+            sample = new byte[len];
+            System.arraycopy(b, off, sample, 0, len);
+        } else {
+            sample = new byte[SAMPLE_SIZE];
+            int slice = SAMPLE_SIZE / SAMPLE_SLICES;
+            long stride = (len - slice) / (SAMPLE_SLICES - 1);
+            for (int i = 0; i < SAMPLE_SLICES; i++) {
+                System.arraycopy(b, off + (int) (i * stride), sample, i * slice, slice);
+            }
+        }
+        Deflater d = deflater();
+        d.setInput(sample);
+        d.finish();
+        byte[] out = new byte[(int) (sample.length * MAX_RATIO)];
+        int n = 0;
+        while (!d.finished() && n < out.length) n += d.deflate(out, n, out.length - n);
+        return d.finished();
+    }
+
+    /** Deflates {@code pt} if it pays off; returns null when it should be stored as is. */
+    public static byte[] maybeDeflate(byte[] pt) {
+        if (!worthCompressing(pt, 0, pt.length)) return null;
+        Deflater d = deflater();
+        d.setInput(pt);
+        d.finish();
+        byte[] out = new byte[(int) (pt.length * MAX_RATIO)];
+        int n = 0;
+        while (!d.finished() && n < out.length) n += d.deflate(out, n, out.length - n);
+        if (!d.finished()) return null;   // the sample was optimistic; not worth it after all
+        byte[] result = new byte[n];
+        System.arraycopy(out, 0, result, 0, n);
+        return result;
+    }
+
+    /** Inverse of {@link #maybeDeflate}; fails rather than produce more than {@code maxSize} bytes. */
+    public static byte[] inflate(byte[] data, int maxSize) throws IOException {
+        Inflater inf = inflater();
+        inf.setInput(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(maxSize, data.length * 4L));
+        byte[] buf = new byte[8192];
+        try {
+            while (!inf.finished()) {
+                int n = inf.inflate(buf);
+                if (n == 0 && (inf.needsInput() || inf.needsDictionary())) throw new IOException("truncated deflate data");
+                if (out.size() + n > maxSize) throw new IOException("inflated data exceeds " + maxSize + " bytes");
+                out.write(buf, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt deflate data", e);
+        }
+        return out.toByteArray();
+    }
+
+    private static Deflater deflater() {
+        Deflater d = DEFLATER.get();
+        if (d == null) {
+            d = new Deflater(Deflater.BEST_SPEED);
+            DEFLATER.set(d);
+        } else {
+            d.reset();
+        }
+        return d;
+    }
+
+    private static Inflater inflater() {
+        Inflater inf = INFLATER.get();
+        if (inf == null) {
+            inf = new Inflater();
+            INFLATER.set(inf);
+        } else {
+            inf.reset();
+        }
+        return inf;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.aesgcmfragment.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import java.nio.ByteBuffer;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe cache of JCA objects for the hot path: one {@link Cipher}, {@link KeyGenerator} and
+ * {@link Mac} per thread, and parsed RSA public keys shared across threads, keyed by their DER bytes.
+ *
+ * <p>Cached ciphers carry no IV state between calls: every user must run
+ * {@code init -> updateAAD -> doFinal} back to back on the same thread, always with a fresh IV,
+ * and must not hand the instance to another thread. Only use them with software keys; a
+ * {@code Cipher} binds to the provider of the first key it is initialised with, so
+ * AndroidKeyStore keys need their own instance.
+ */
+public final class CryptoContext {
+    private static final CryptoContext SHARED = new CryptoContext();
+    private static final int MAX_PUBLIC_KEYS = 16;
+
+    private final ThreadLocal<Cipher> gcm = new ThreadLocal<>();
+    private final ThreadLocal<Cipher> rsaOaep = new ThreadLocal<>();
+    private final ThreadLocal<KeyGenerator> aes256 = new ThreadLocal<>();
+    private final ThreadLocal<Mac> hmacSha256 = new ThreadLocal<>();
+    private final ConcurrentHashMap<ByteBuffer, PublicKey> rsaPublicKeys = new ConcurrentHashMap<>();
+
+    public static CryptoContext shared() {
+        return SHARED;
+    }
+
+    public Cipher gcm() throws Exception {
+        Cipher c = gcm.get();
+        if (c == null) {
+            c = Cipher.getInstance("AES/GCM/NoPadding");
+            gcm.set(c);
+        }
+        return c;
+    }
+
+    public Cipher rsaOaep() throws Exception {
+        Cipher c = rsaOaep.get();
+        if (c == null) {
+            c = Cipher.getInstance("RSA/ECB/OAEPWithSHA-256AndMGF1Padding");
+            rsaOaep.set(c);
+        }
+        return c;
+    }
+
+    public KeyGenerator aes256KeyGenerator() throws Exception {
+        KeyGenerator kg = aes256.get();
+        if (kg == null) {
+            kg = KeyGenerator.getInstance("AES");
+            kg.init(256);
+            aes256.set(kg);
+        }
+        return kg;
+    }
+
+    /** Uninitialised; callers {@code init} it with their key before each use. */
+    public Mac hmacSha256() throws Exception {
+        Mac m = hmacSha256.get();
+        if (m == null) {
+            m = Mac.getInstance("HmacSHA256");
+            hmacSha256.set(m);
+        }
+        return m;
+    }
+
+    /** Parses an X.509 DER RSA public key once; later calls with the same bytes hit the cache. */
+    public PublicKey rsaPublicKey(byte[] x509Der) throws Exception {
+        PublicKey cached = rsaPublicKeys.get(ByteBuffer.wrap(x509Der));
+        if (cached != null) return cached;
+        PublicKey pub = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(x509Der));
+        if (rsaPublicKeys.size() >= MAX_PUBLIC_KEYS) rsaPublicKeys.clear(); // server keys rotate rarely
+        rsaPublicKeys.put(ByteBuffer.wrap(x509Der.clone()), pub);
+        return pub;
+    }
+}
@@ -1,45 +1,145 @@
 package com.example.aesgcmfragment.crypto;
 
+import com.example.aesgcmfragment.metrics.CryptoMetrics;
+import com.example.aesgcmfragment.metrics.CryptoMetrics.Op;
+
 import javax.crypto.*;
 import javax.crypto.spec.GCMParameterSpec;
-import java.security.KeyFactory;
-import java.security.PublicKey;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
-import java.security.spec.X509EncodedKeySpec;
 
 public final class DekCrypto {
+    public static final int IV_SIZE = 12;
+    public static final int TAG_SIZE = 16;
+
     private static final SecureRandom RNG = new SecureRandom();
+    private static final CryptoContext CTX = CryptoContext.shared();
 
     public static SecretKey generateDek() throws Exception {
-        KeyGenerator kg = KeyGenerator.getInstance("AES");
-        kg.init(256);
-        return kg.generateKey();
+        long t = CryptoMetrics.start();
+        SecretKey dek = CTX.aes256KeyGenerator().generateKey();
+        CryptoMetrics.end(Op.DEK_GENERATE, 0, t);
+        return dek;
     }
 
     public static byte[] randomIv() {
-        byte[] iv = new byte[12];
+        byte[] iv = new byte[IV_SIZE];
         RNG.nextBytes(iv);
         return iv;
     }
 
     public static byte[] aeadEncrypt(SecretKey dek, byte[] iv, byte[] pt, byte[] aad) throws Exception {
-        Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
-        c.init(Cipher.ENCRYPT_MODE, dek, new GCMParameterSpec(128, iv));
-        if (aad != null) c.updateAAD(aad);
-        return c.doFinal(pt); // ct||tag
+        long t = CryptoMetrics.start();
+        try {
+            Cipher c = initGcm(Cipher.ENCRYPT_MODE, dek, iv);
+            t = CryptoMetrics.lap(Op.CIPHER_INIT, 0, t);
+            if (aad != null) c.updateAAD(aad);
+            byte[] ct = c.doFinal(pt); // ct||tag
+            CryptoMetrics.end(Op.AEAD_ENCRYPT, pt.length, t);
+            return ct;
+        } catch (Exception e) {
+            CryptoMetrics.failure(Op.AEAD_ENCRYPT, e);
+            throw e;
+        }
     }
 
     public static byte[] aeadDecrypt(SecretKey dek, byte[] iv, byte[] ct, byte[] aad) throws Exception {
-        Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
-        c.init(Cipher.DECRYPT_MODE, dek, new GCMParameterSpec(128, iv));
-        if (aad != null) c.updateAAD(aad);
-        return c.doFinal(ct);
+        long t = CryptoMetrics.start();
+        try {
+            Cipher c = initGcm(Cipher.DECRYPT_MODE, dek, iv);
+            t = CryptoMetrics.lap(Op.CIPHER_INIT, 0, t);
+            if (aad != null) c.updateAAD(aad);
+            byte[] pt = c.doFinal(ct);
+            CryptoMetrics.end(Op.AEAD_DECRYPT, ct.length, t);
+            return pt;
+        } catch (Exception e) {
+            CryptoMetrics.failure(Op.AEAD_DECRYPT, e);
+            throw e;
+        }
+    }
+
+    /** Exact ciphertext (ct||tag) length produced for {@code ptLen} plaintext bytes. */
+    public static int encryptedSize(int ptLen) {
+        return ptLen + TAG_SIZE;
+    }
+
+    /** Exact plaintext length recovered from {@code ctLen} ciphertext (ct||tag) bytes. */
+    public static int decryptedSize(int ctLen) {
+        if (ctLen < TAG_SIZE) throw new IllegalArgumentException("ciphertext shorter than tag");
+        return ctLen - TAG_SIZE;
+    }
+
+    /**
+     * Encrypts {@code pt}'s remaining bytes into {@code out} (heap or direct) without allocating
+     * a result array. {@code out} needs {@link #encryptedSize(int)} bytes remaining; both buffers'
+     * positions advance. {@code aad} may be null. Returns bytes written.
+     */
+    public static int aeadEncrypt(SecretKey dek, byte[] iv, ByteBuffer pt, ByteBuffer aad, ByteBuffer out) throws Exception {
+        long t = CryptoMetrics.start();
+        try {
+            Cipher c = initGcm(Cipher.ENCRYPT_MODE, dek, iv);
+            t = CryptoMetrics.lap(Op.CIPHER_INIT, 0, t);
+            if (aad != null) c.updateAAD(aad);
+            int len = pt.remaining();
+            int n = c.doFinal(pt, out);
+            CryptoMetrics.end(Op.AEAD_ENCRYPT, len, t);
+            return n;
+        } catch (Exception e) {
+            CryptoMetrics.failure(Op.AEAD_ENCRYPT, e);
+            throw e;
+        }
     }
 
+    /** ByteBuffer counterpart of {@link #aeadDecrypt(SecretKey, byte[], byte[], byte[])}; see {@link #aeadEncrypt(SecretKey, byte[], ByteBuffer, ByteBuffer, ByteBuffer)}. */
+    public static int aeadDecrypt(SecretKey dek, byte[] iv, ByteBuffer ct, ByteBuffer aad, ByteBuffer out) throws Exception {
+        long t = CryptoMetrics.start();
+        try {
+            Cipher c = initGcm(Cipher.DECRYPT_MODE, dek, iv);
+            t = CryptoMetrics.lap(Op.CIPHER_INIT, 0, t);
+            if (aad != null) c.updateAAD(aad);
+            int len = ct.remaining();
+            int n = c.doFinal(ct, out);
+            CryptoMetrics.end(Op.AEAD_DECRYPT, len, t);
+            return n;
+        } catch (Exception e) {
+            CryptoMetrics.failure(Op.AEAD_DECRYPT, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Encrypts {@code buf[position, limit)} in place. The buffer needs {@link #TAG_SIZE} bytes of
+     * capacity past its limit; on return {@code [position, limit)} holds ct||tag.
+     */
+    public static int aeadEncryptInPlace(SecretKey dek, byte[] iv, ByteBuffer buf, ByteBuffer aad) throws Exception {
+        int start = buf.position();
+        int len = buf.remaining();
+        if (buf.capacity() - start < encryptedSize(len)) throw new ShortBufferException("need " + TAG_SIZE + " spare bytes for the tag");
+        ByteBuffer out = buf.duplicate();
+        out.limit(start + encryptedSize(len));
+        int n = aeadEncrypt(dek, iv, buf.duplicate(), aad, out);
+        buf.limit(start + n);
+        return n;
+    }
+
+    /** Decrypts {@code buf[position, limit)} in place; on return {@code [position, limit)} holds the plaintext. */
+    public static int aeadDecryptInPlace(SecretKey dek, byte[] iv, ByteBuffer buf, ByteBuffer aad) throws Exception {
+        int start = buf.position();
+        ByteBuffer out = buf.duplicate();
+        out.limit(start + decryptedSize(buf.remaining()));
+        int n = aeadDecrypt(dek, iv, buf.duplicate(), aad, out);
+        buf.limit(start + n);
+        return n;
+    }
+
+    /** Bare RSA-OAEP-SHA256 ciphertext of the DEK; {@link RsaOaepKeyWrapper} adds algorithm and key version. */
     public static byte[] wrapDekWithRsaOaep(byte[] serverPubKeyX509Der, SecretKey dek) throws Exception {
-        PublicKey pub = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(serverPubKeyX509Der));
-        Cipher rsa = Cipher.getInstance("RSA/ECB/OAEPWithSHA-256AndMGF1Padding");
-        rsa.init(Cipher.ENCRYPT_MODE, pub);
-        return rsa.doFinal(dek.getEncoded());
+        return RsaOaepKeyWrapper.encrypt(CTX.rsaPublicKey(serverPubKeyX509Der), dek);
+    }
+
+    private static Cipher initGcm(int mode, SecretKey dek, byte[] iv) throws Exception {
+        Cipher c = CTX.gcm();
+        c.init(mode, dek, new GCMParameterSpec(128, iv));
+        return c;
     }
 }
@@ -0,0 +1,196 @@
+package com.example.aesgcmfragment.crypto;
+
+import com.example.aesgcmfragment.metrics.CryptoMetrics;
+import com.example.aesgcmfragment.metrics.CryptoMetrics.Op;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.AlgorithmParameters;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+
+/**
+ * ECIES/HPKE-style DEK wrapping: an ephemeral ECDH key agreement with the recipient's static
+ * key, HKDF-SHA256 to derive a one-time AES-256 KEK and nonce, then AES-GCM over the raw DEK
+ * with the {@link WrappedDek#header()} as AAD. Unwrapping is far cheaper than an RSA private-key
+ * operation, and the wrapped key is 100-150 bytes instead of the RSA modulus size.
+ *
+ * <p>Body: {@code ephemeralPubLen(2) | ephemeralPub(X.509 DER) | ct(32) | tag(16)}. HKDF uses an
+ * all-zero salt and info {@code label | header | ephemeralPub | recipientPub}, binding the KEK to
+ * both keys, the algorithm and the key version.
+ *
+ * <p>{@link Curve#X25519} needs a provider with XDH support (Java 11+, Android 12+).
+ */
+public final class EcdhKeyWrapper implements KeyWrapper {
+    private static final CryptoContext CTX = CryptoContext.shared();
+    private static final byte[] LABEL = "aesgcmfragment dek-wrap v1".getBytes(StandardCharsets.US_ASCII);
+    private static final int KEK_SIZE = 32;
+
+    public enum Curve {
+        P256(ALG_ECDH_P256_HKDF_AES_GCM, "EC", "EC", "ECDH"),
+        X25519(ALG_X25519_HKDF_AES_GCM, "XDH", "X25519", "XDH");
+
+        final int algorithm;
+        final String keyFactory;
+        final String keyPairGenerator;
+        final String keyAgreement;
+
+        Curve(int algorithm, String keyFactory, String keyPairGenerator, String keyAgreement) {
+            this.algorithm = algorithm;
+            this.keyFactory = keyFactory;
+            this.keyPairGenerator = keyPairGenerator;
+            this.keyAgreement = keyAgreement;
+        }
+    }
+
+    private final Curve curve;
+    private final String keyVersion;
+    private final PublicKey recipient;
+    private final byte[] recipientDer;
+    private final byte[] header;
+    private final ThreadLocal<KeyPairGenerator> ephemeral = new ThreadLocal<>();
+    private final ThreadLocal<KeyAgreement> agreement = new ThreadLocal<>();
+
+    public EcdhKeyWrapper(Curve curve, String keyVersion, byte[] recipientX509Der) throws Exception {
+        this.curve = curve;
+        this.keyVersion = keyVersion;
+        this.header = WrappedDek.header(curve.algorithm, keyVersion);
+        this.recipientDer = recipientX509Der.clone();
+        this.recipient = KeyFactory.getInstance(curve.keyFactory).generatePublic(new X509EncodedKeySpec(recipientDer));
+        if (curve == Curve.P256 && !isP256(((ECPublicKey) recipient).getParams())) {
+            throw new IllegalArgumentException("recipient key is not on P-256");
+        }
+    }
+
+    /** True only for secp256r1 itself, not other 256-bit curves such as secp256k1 or brainpoolP256r1. */
+    static boolean isP256(ECParameterSpec params) throws Exception {
+        AlgorithmParameters ap = AlgorithmParameters.getInstance("EC");
+        ap.init(new ECGenParameterSpec("secp256r1"));
+        ECParameterSpec p256 = ap.getParameterSpec(ECParameterSpec.class);
+        return params.getCurve().equals(p256.getCurve())
+                && params.getOrder().equals(p256.getOrder())
+                && params.getGenerator().equals(p256.getGenerator())
+                && params.getCofactor() == p256.getCofactor();
+    }
+
+    @Override public int algorithm() { return curve.algorithm; }
+    @Override public String keyVersion() { return keyVersion; }
+
+    @Override public byte[] wrap(SecretKey dek) throws Exception {
+        long t = CryptoMetrics.start();
+        try {
+            KeyPair eph = ephemeralGenerator().generateKeyPair();
+            byte[] ephDer = eph.getPublic().getEncoded();
+            Cipher gcm = initKek(Cipher.ENCRYPT_MODE, eph.getPrivate(), recipient, ephDer);
+            byte[] raw = dek.getEncoded();
+            ByteBuffer body = ByteBuffer.allocate(2 + ephDer.length + DekCrypto.encryptedSize(raw.length))
+                    .putShort((short) ephDer.length)
+                    .put(ephDer);
+            gcm.doFinal(ByteBuffer.wrap(raw), body);
+            Arrays.fill(raw, (byte) 0);
+            byte[] wrapped = WrappedDek.encode(curve.algorithm, keyVersion, body.array());
+            CryptoMetrics.end(Op.DEK_WRAP, 0, t);
+            return wrapped;
+        } catch (Exception e) {
+            CryptoMetrics.failure(Op.DEK_WRAP, e);
+            throw e;
+        }
+    }
+
+    @Override public SecretKey unwrap(PrivateKey recipientPrivate, byte[] wrappedDek) throws Exception {
+        ByteBuffer body = ByteBuffer.wrap(WrappedDek.parseFor(this, wrappedDek).body());
+        byte[] ephDer;
+        try {
+            ephDer = new byte[body.getShort() & 0xFFFF];
+            body.get(ephDer);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated wrapped DEK", e);
+        }
+        PublicKey ephPub = KeyFactory.getInstance(curve.keyFactory).generatePublic(new X509EncodedKeySpec(ephDer));
+        Cipher gcm = initKek(Cipher.DECRYPT_MODE, recipientPrivate, ephPub, ephDer);
+        byte[] raw = gcm.doFinal(body.array(), body.position(), body.remaining());
+        try {
+            return new SecretKeySpec(raw, "AES");
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+    }
+
+    /** ECDH, then HKDF into KEK||nonce; returns the cached GCM cipher initialised with both and the header as AAD. */
+    private Cipher initKek(int mode, PrivateKey priv, PublicKey peer, byte[] ephDer) throws Exception {
+        KeyAgreement ka = keyAgreement();
+        ka.init(priv);
+        ka.doPhase(peer, true);
+        byte[] shared = ka.generateSecret();
+        byte[] info = ByteBuffer.allocate(LABEL.length + header.length + ephDer.length + recipientDer.length)
+                .put(LABEL).put(header).put(ephDer).put(recipientDer).array();
+        byte[] okm = hkdfSha256(shared, null, info, KEK_SIZE + DekCrypto.IV_SIZE);
+        Arrays.fill(shared, (byte) 0);
+        try {
+            Cipher gcm = CTX.gcm();
+            gcm.init(mode, new SecretKeySpec(okm, 0, KEK_SIZE, "AES"),
+                    new GCMParameterSpec(128, okm, KEK_SIZE, DekCrypto.IV_SIZE));
+            gcm.updateAAD(header);
+            return gcm;
+        } finally {
+            Arrays.fill(okm, (byte) 0);
+        }
+    }
+
+    /** RFC 5869 HKDF with HMAC-SHA256; a null or empty salt means 32 zero bytes. */
+    static byte[] hkdfSha256(byte[] ikm, byte[] salt, byte[] info, int length) throws Exception {
+        if (length > 255 * 32) throw new IllegalArgumentException("HKDF output too long");
+        Mac mac = CTX.hmacSha256();
+        mac.init(new SecretKeySpec(salt == null || salt.length == 0 ? new byte[32] : salt, "HmacSHA256"));
+        byte[] prk = mac.doFinal(ikm);
+        mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+        Arrays.fill(prk, (byte) 0);
+        byte[] okm = new byte[length];
+        byte[] block = new byte[0];
+        for (int i = 1, off = 0; off < length; i++) {
+            mac.update(block);
+            mac.update(info);
+            mac.update((byte) i);
+            block = mac.doFinal();
+            int n = Math.min(block.length, length - off);
+            System.arraycopy(block, 0, okm, off, n);
+            off += n;
+        }
+        Arrays.fill(block, (byte) 0);
+        return okm;
+    }
+
+    private KeyPairGenerator ephemeralGenerator() throws Exception {
+        KeyPairGenerator kpg = ephemeral.get();
+        if (kpg == null) {
+            kpg = KeyPairGenerator.getInstance(curve.keyPairGenerator);
+            if (curve == Curve.P256) kpg.initialize(((ECPublicKey) recipient).getParams());
+            ephemeral.set(kpg);
+        }
+        return kpg;
+    }
+
+    private KeyAgreement keyAgreement() throws Exception {
+        KeyAgreement ka = agreement.get();
+        if (ka == null) {
+            ka = KeyAgreement.getInstance(curve.keyAgreement);
+            agreement.set(ka);
+        }
+        return ka;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.aesgcmfragment.crypto;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Versioned binary container for one encrypted blob, replacing the separate Base64 strings that
+ * were stored in SharedPreferences and passed to {@code BackupApi.uploadBackup}.
+ *
+ * <p>Layout (big-endian): {@code version(1) | flags(1) | keyVersionLen(1) | keyVersion(UTF-8) |
+ * ivLen(1) | iv | wrappedDekLen(2) | wrappedDek | aadLen(2) | aad | segmentSize(4) | ciphertext}.
+ * {@code segmentSize} is 0 for a single GCM message (ct||tag); otherwise the ciphertext is a
+ * {@link StreamingAead} stream. {@link #authenticatedHeader()} is meant to be fed to GCM as AAD
+ * so the format fields cannot be altered undetected. {@link #FLAG_DEFLATE} marks a single
+ * message whose plaintext was deflated with {@link Compression} before encryption; streams
+ * record that in their own header.
+ *
+ * <p>{@link #parse(ByteBuffer)} does not copy: iv, wrapped DEK, AAD and ciphertext are read-only
+ * views of the source buffer.
+ */
+public final class Envelope {
+    public static final byte VERSION = 1;
+    public static final int FLAG_DEFLATE = 0x01;
+
+    private final int flags;
+    private final String keyVersion;
+    private final ByteBuffer iv;
+    private final ByteBuffer wrappedDek;
+    private final ByteBuffer aad;
+    private final int segmentSize;
+    private final ByteBuffer ciphertext;
+
+    public Envelope(int flags, String keyVersion, byte[] iv, byte[] wrappedDek, byte[] aad, int segmentSize, byte[] ciphertext) {
+        this(flags, keyVersion, wrap(iv), wrap(wrappedDek), wrap(aad), segmentSize, wrap(ciphertext));
+    }
+
+    private Envelope(int flags, String keyVersion, ByteBuffer iv, ByteBuffer wrappedDek, ByteBuffer aad, int segmentSize, ByteBuffer ciphertext) {
+        if (flags < 0 || flags > 0xFF) throw new IllegalArgumentException("flags out of range");
+        if (keyVersion.getBytes(StandardCharsets.UTF_8).length > 0xFF) throw new IllegalArgumentException("keyVersion too long");
+        if (iv.remaining() > 0xFF) throw new IllegalArgumentException("iv too long");
+        if (wrappedDek.remaining() > 0xFFFF || aad.remaining() > 0xFFFF) throw new IllegalArgumentException("wrappedDek/aad too long");
+        this.flags = flags;
+        this.keyVersion = keyVersion;
+        this.iv = iv.asReadOnlyBuffer();
+        this.wrappedDek = wrappedDek.asReadOnlyBuffer();
+        this.aad = aad.asReadOnlyBuffer();
+        this.segmentSize = segmentSize;
+        this.ciphertext = ciphertext.asReadOnlyBuffer();
+    }
+
+    /** Parses {@code buf}'s remaining bytes; the returned envelope shares its content. */
+    public static Envelope parse(ByteBuffer buf) {
+        ByteBuffer in = buf.duplicate();
+        try {
+            byte version = in.get();
+            if (version != VERSION) throw new IllegalArgumentException("unsupported envelope version " + version);
+            int flags = in.get() & 0xFF;
+            ByteBuffer kv = slice(in, in.get() & 0xFF);
+            byte[] kvBytes = new byte[kv.remaining()];
+            kv.get(kvBytes);
+            ByteBuffer iv = slice(in, in.get() & 0xFF);
+            ByteBuffer wrappedDek = slice(in, in.getShort() & 0xFFFF);
+            ByteBuffer aad = slice(in, in.getShort() & 0xFFFF);
+            int segmentSize = in.getInt();
+            ByteBuffer ct = slice(in, in.remaining());
+            return new Envelope(flags, new String(kvBytes, StandardCharsets.UTF_8), iv, wrappedDek, aad, segmentSize, ct);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated envelope", e);
+        }
+    }
+
+    public static Envelope parse(byte[] bytes) {
+        return parse(ByteBuffer.wrap(bytes));
+    }
+
+    public int flags() { return flags; }
+    public String keyVersion() { return keyVersion; }
+    public int segmentSize() { return segmentSize; }
+    public byte[] iv() { return bytes(iv); }
+    public byte[] wrappedDek() { return bytes(wrappedDek); }
+    public byte[] aad() { return bytes(aad); }
+
+    /** Read-only view of the ciphertext; no copy is made. */
+    public ByteBuffer ciphertext() {
+        return ciphertext.duplicate();
+    }
+
+    public byte[] ciphertextBytes() {
+        return bytes(ciphertext);
+    }
+
+    /** Length of everything before the ciphertext. */
+    public int headerSize() {
+        return 1 + 1 + 1 + keyVersion.getBytes(StandardCharsets.UTF_8).length + 1 + iv.remaining()
+                + 2 + wrappedDek.remaining() + 2 + aad.remaining() + 4;
+    }
+
+    public int serializedSize() {
+        return headerSize() + ciphertext.remaining();
+    }
+
+    /** Writes the envelope at {@code out}'s position and advances it. */
+    public ByteBuffer writeTo(ByteBuffer out) {
+        writeHeaderTo(out);
+        out.put(ciphertext.duplicate());
+        return out;
+    }
+
+    /** Writes only the header; the ciphertext can then be streamed straight after it. */
+    public ByteBuffer writeHeaderTo(ByteBuffer out) {
+        byte[] kv = keyVersion.getBytes(StandardCharsets.UTF_8);
+        out.put(VERSION)
+                .put((byte) flags)
+                .put((byte) kv.length).put(kv)
+                .put((byte) iv.remaining()).put(iv.duplicate())
+                .putShort((short) wrappedDek.remaining()).put(wrappedDek.duplicate())
+                .putShort((short) aad.remaining()).put(aad.duplicate())
+                .putInt(segmentSize);
+        return out;
+    }
+
+    public byte[] toByteArray() {
+        return writeTo(ByteBuffer.allocate(serializedSize())).array();
+    }
+
+    /**
+     * AAD binding the fields known before encryption: {@code version | flags | keyVersion |
+     * segmentSize | aad}. The IV and wrapped DEK are covered implicitly, since changing either
+     * changes the key stream or the key and the tag no longer verifies.
+     */
+    public byte[] authenticatedHeader() {
+        return authenticatedHeader(flags, keyVersion, segmentSize, bytes(aad));
+    }
+
+    public static byte[] authenticatedHeader(int flags, String keyVersion, int segmentSize, byte[] aad) {
+        byte[] kv = keyVersion.getBytes(StandardCharsets.UTF_8);
+        int aadLen = aad == null ? 0 : aad.length;
+        ByteBuffer b = ByteBuffer.allocate(1 + 1 + 1 + kv.length + 4 + 2 + aadLen)
+                .put(VERSION)
+                .put((byte) flags)
+                .put((byte) kv.length).put(kv)
+                .putInt(segmentSize)
+                .putShort((short) aadLen);
+        if (aad != null) b.put(aad);
+        return b.array();
+    }
+
+    private static ByteBuffer slice(ByteBuffer in, int len) {
+        if (len > in.remaining()) throw new BufferUnderflowException();
+        ByteBuffer s = in.slice();
+        s.limit(len);
+        in.position(in.position() + len);
+        return s;
+    }
+
+    private static ByteBuffer wrap(byte[] b) {
+        return ByteBuffer.wrap(b == null ? new byte[0] : b);
+    }
+
+    private static byte[] bytes(ByteBuffer b) {
+        byte[] out = new byte[b.remaining()];
+        b.duplicate().get(out);
+        return out;
+    }
+}
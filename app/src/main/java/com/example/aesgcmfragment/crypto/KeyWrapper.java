@@ -0,0 +1,26 @@
+package com.example.aesgcmfragment.crypto;
+
+import javax.crypto.SecretKey;
+import java.security.PrivateKey;
+
+/**
+ * Wraps a DEK for one recipient key. Output is a {@link WrappedDek}, so it records which
+ * algorithm and key version produced it and can be routed to the matching private key.
+ *
+ * <p>Implementations are thread-safe and meant to be created once per recipient key and reused.
+ */
+public interface KeyWrapper {
+    int ALG_RSA_OAEP_SHA256 = 1;
+    int ALG_ECDH_P256_HKDF_AES_GCM = 2;
+    int ALG_X25519_HKDF_AES_GCM = 3;
+
+    int algorithm();
+
+    String keyVersion();
+
+    /** Returns the encoded {@link WrappedDek}. */
+    byte[] wrap(SecretKey dek) throws Exception;
+
+    /** Recipient (server) side; rejects wrapped DEKs made for another algorithm or key version. */
+    SecretKey unwrap(PrivateKey recipient, byte[] wrappedDek) throws Exception;
+}
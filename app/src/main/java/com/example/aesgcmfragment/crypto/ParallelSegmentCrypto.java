@@ -0,0 +1,135 @@
+package com.example.aesgcmfragment.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterOutputStream;
+
+/**
+ * Encrypts/decrypts the {@link StreamingAead} format with segments processed concurrently on a
+ * pool. Segments are read and written in order on the calling thread, at most
+ * {@code maxInFlight} are queued at once, so memory stays at roughly
+ * {@code 2 * maxInFlight * segmentSize}. Output is byte-identical to the sequential streams.
+ * Workers use the per-thread cipher of {@link CryptoContext#shared()}.
+ */
+public final class ParallelSegmentCrypto {
+    private final ExecutorService pool;
+    private final int maxInFlight;
+
+    /** Uses the common fork-join pool with two segments in flight per core. */
+    public ParallelSegmentCrypto() {
+        this(ForkJoinPool.commonPool(), 2 * ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    public ParallelSegmentCrypto(ExecutorService pool, int maxInFlight) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight < 1");
+        this.pool = pool;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public void encrypt(SecretKey dek, InputStream pt, OutputStream ct, byte[] aad) throws Exception {
+        encrypt(dek, pt, ct, aad, StreamingAead.DEFAULT_SEGMENT_SIZE);
+    }
+
+    public void encrypt(SecretKey dek, InputStream pt, OutputStream ct, byte[] aad, int segmentSize) throws Exception {
+        encrypt(dek, StreamingAead.Header.create(0, segmentSize), pt, ct, aad);
+    }
+
+    void encrypt(SecretKey dek, StreamingAead.Header h, InputStream pt, OutputStream ct, byte[] aad) throws Exception {
+        byte[] segAad = h.segmentAad(aad);
+        SecretKey key = h.streamKey(dek);
+        ct.write(h.encode());
+        run(h.segmentSize, pt, ct, (index, last, in, len) -> {
+            byte[] out = new byte[len + StreamingAead.TAG_SIZE];
+            StreamingAead.seal(cipher(), key, h, segAad, index, last, in, 0, len, out, 0);
+            return out;
+        });
+    }
+
+    /**
+     * Decrypts and verifies every segment; segments before a failing one have already been written.
+     * Streams with {@link StreamingAead#FLAG_DEFLATE} are inflated on the calling thread.
+     */
+    public void decrypt(SecretKey dek, InputStream ct, OutputStream pt, byte[] aad) throws Exception {
+        StreamingAead.Header h = StreamingAead.Header.read(ct);
+        byte[] segAad = h.segmentAad(aad);
+        SecretKey key = h.streamKey(dek);
+        Inflater inflater = (h.flags & StreamingAead.FLAG_DEFLATE) != 0 ? new Inflater() : null;
+        try {
+            InflaterOutputStream inflating = inflater == null ? null : new InflaterOutputStream(pt, inflater, 8192);
+            run(h.segmentSize + StreamingAead.TAG_SIZE, ct, inflating == null ? pt : inflating, (index, last, in, len) -> {
+                if (len < StreamingAead.TAG_SIZE) throw new IOException("truncated segment " + index);
+                byte[] out = new byte[len - StreamingAead.TAG_SIZE];
+                StreamingAead.open(cipher(), key, h, segAad, index, last, in, 0, len, out, 0);
+                return out;
+            });
+            if (inflating != null) inflating.finish();
+        } finally {
+            if (inflater != null) inflater.end();
+        }
+    }
+
+    private void run(int blockSize, InputStream in, OutputStream out, SegmentOp op) throws Exception {
+        ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        try {
+            byte[] cur = new byte[blockSize];
+            int curLen = readFully(in, cur);
+            for (long index = 0; ; index++) {
+                byte[] next = null;
+                int nextLen = 0;
+                if (curLen == blockSize) {      // a full block is final only if nothing follows it
+                    next = new byte[blockSize];
+                    nextLen = readFully(in, next);
+                }
+                boolean last = nextLen == 0;
+                final long i = index;
+                final byte[] block = cur;
+                final int len = curLen;
+                inFlight.add(pool.submit(() -> op.apply(i, last, block, len)));
+                while (inFlight.size() > maxInFlight) out.write(await(inFlight.poll()));
+                if (last) break;
+                cur = next;
+                curLen = nextLen;
+            }
+            while (!inFlight.isEmpty()) out.write(await(inFlight.poll()));
+        } finally {
+            for (Future<byte[]> f : inFlight) f.cancel(true);
+        }
+    }
+
+    private static byte[] await(Future<byte[]> f) throws Exception {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] b) throws IOException {
+        int n = 0;
+        while (n < b.length) {
+            int r = in.read(b, n, b.length - n);
+            if (r < 0) break;
+            n += r;
+        }
+        return n;
+    }
+
+    private static Cipher cipher() throws Exception {
+        return CryptoContext.shared().gcm();
+    }
+
+    private interface SegmentOp {
+        byte[] apply(long index, boolean last, byte[] in, int len) throws Exception;
+    }
+}
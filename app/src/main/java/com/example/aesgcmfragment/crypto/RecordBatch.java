@@ -0,0 +1,193 @@
+package com.example.aesgcmfragment.crypto;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Many small records sealed under one DEK that is wrapped once, so per-record cost is close to
+ * a bare AES-GCM call instead of an RSA operation per record.
+ *
+ * <p>Envelope: {@code version(1) | noncePrefix(8) | wrappedDekLen(2) | wrappedDek | count(4) |
+ * count * (idLen(2) | id(UTF-8) | ctLen(4)) | indexTag(16) | ct_0 | ... | ct_n-1}. Record
+ * {@code i} uses nonce {@code noncePrefix || i (4, BE)} and AAD {@code idLen | id | i}, so each
+ * record can be opened on its own and cannot be swapped with another record or renamed without
+ * failing its tag. {@code indexTag} is a GCM tag over everything before it (nonce
+ * {@code noncePrefix || 0xFFFFFFFF}, no plaintext); it is checked before the first lookup, so
+ * removing, truncating or renaming records fails authentication instead of reading as absent.
+ */
+public final class RecordBatch {
+    public static final byte VERSION = 2;   // 1 had no index tag
+    static final int NONCE_PREFIX_SIZE = 8;
+    private static final int INDEX_NONCE = -1; // 0xFFFFFFFF: never a record index
+
+    private final byte[] envelope;
+    private final byte[] noncePrefix;
+    private final byte[] wrappedDek;
+    private final List<String> ids;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final Map<String, Integer> indexById;
+    private final int indexEnd;                 // offset of indexTag
+    private volatile boolean indexVerified;
+
+    private RecordBatch(byte[] envelope, byte[] noncePrefix, byte[] wrappedDek, List<String> ids, int[] offsets, int[] lengths,
+                        int indexEnd) {
+        this.envelope = envelope;
+        this.indexEnd = indexEnd;
+        this.noncePrefix = noncePrefix;
+        this.wrappedDek = wrappedDek;
+        this.ids = Collections.unmodifiableList(ids);
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.indexById = new HashMap<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) indexById.put(ids.get(i), i);
+    }
+
+    public static final class Record {
+        public final String id;
+        public final byte[] data;
+
+        public Record(String id, byte[] data) {
+            this.id = id;
+            this.data = data;
+        }
+    }
+
+    /** Generates a fresh DEK, wraps it once for the server key and seals every record under it. */
+    public static byte[] encrypt(byte[] serverPubKeyX509Der, List<Record> records) throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        return encrypt(dek, DekCrypto.wrapDekWithRsaOaep(serverPubKeyX509Der, dek), records);
+    }
+
+    /** Seals {@code records} under {@code dek}; {@code wrappedDek} is stored verbatim in the envelope. */
+    public static byte[] encrypt(SecretKey dek, byte[] wrappedDek, List<Record> records) throws Exception {
+        if (wrappedDek.length > 0xFFFF) throw new IllegalArgumentException("wrapped DEK too large");
+        byte[] prefix = new byte[NONCE_PREFIX_SIZE];
+        System.arraycopy(DekCrypto.randomIv(), 0, prefix, 0, NONCE_PREFIX_SIZE);
+
+        int n = records.size();
+        byte[][] idBytes = new byte[n][];
+        byte[][] cts = new byte[n][];
+        int size = 1 + NONCE_PREFIX_SIZE + 2 + wrappedDek.length + 4 + DekCrypto.TAG_SIZE;
+        Map<String, Boolean> seen = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            Record r = records.get(i);
+            if (seen.put(r.id, Boolean.TRUE) != null) throw new IllegalArgumentException("duplicate record id " + r.id);
+            idBytes[i] = r.id.getBytes(StandardCharsets.UTF_8);
+            if (idBytes[i].length > 0xFFFF) throw new IllegalArgumentException("record id too long");
+            cts[i] = DekCrypto.aeadEncrypt(dek, nonce(prefix, i), r.data, aad(idBytes[i], i));
+            size += 2 + idBytes[i].length + 4 + cts[i].length;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size)
+                .put(VERSION)
+                .put(prefix)
+                .putShort((short) wrappedDek.length)
+                .put(wrappedDek)
+                .putInt(n);
+        for (int i = 0; i < n; i++) {
+            out.putShort((short) idBytes[i].length).put(idBytes[i]).putInt(cts[i].length);
+        }
+        out.put(DekCrypto.aeadEncrypt(dek, nonce(prefix, INDEX_NONCE), new byte[0], Arrays.copyOf(out.array(), out.position())));
+        for (byte[] ct : cts) out.put(ct);
+        return out.array();
+    }
+
+    /** Parses the envelope's index without decrypting anything; the array is referenced, not copied. */
+    public static RecordBatch parse(byte[] envelope) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(envelope);
+            byte version = in.get();
+            if (version != VERSION) throw new IllegalArgumentException("unsupported batch version " + version);
+            byte[] prefix = new byte[NONCE_PREFIX_SIZE];
+            in.get(prefix);
+            byte[] wrapped = new byte[in.getShort() & 0xFFFF];
+            in.get(wrapped);
+            int n = in.getInt();
+            if (n < 0 || n > in.remaining() / 6) throw new IllegalArgumentException("bad record count " + n);
+            List<String> ids = new ArrayList<>(n);
+            int[] lengths = new int[n];
+            for (int i = 0; i < n; i++) {
+                byte[] id = new byte[in.getShort() & 0xFFFF];
+                in.get(id);
+                ids.add(new String(id, StandardCharsets.UTF_8));
+                lengths[i] = in.getInt();
+                if (lengths[i] < DekCrypto.TAG_SIZE) throw new IllegalArgumentException("bad record length");
+            }
+            int indexEnd = in.position();
+            if (in.remaining() < DekCrypto.TAG_SIZE) throw new BufferUnderflowException();
+            in.position(indexEnd + DekCrypto.TAG_SIZE);
+            int[] offsets = new int[n];
+            long pos = in.position();
+            for (int i = 0; i < n; i++) {
+                offsets[i] = (int) pos;
+                pos += lengths[i];
+            }
+            if (pos != envelope.length) throw new IllegalArgumentException("envelope length mismatch");
+            return new RecordBatch(envelope, prefix, wrapped, ids, offsets, lengths, indexEnd);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated batch envelope", e);
+        }
+    }
+
+    public byte[] wrappedDek() {
+        return wrappedDek.clone();
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public List<String> ids() {
+        return ids;
+    }
+
+    /**
+     * Authenticates and decrypts a single record; returns null if {@code id} is not in the batch.
+     * The index is authenticated first, so an id dropped by tampering throws rather than returning null.
+     */
+    public byte[] decrypt(SecretKey dek, String id) throws Exception {
+        verifyIndex(dek);
+        Integer i = indexById.get(id);
+        return i == null ? null : decrypt(dek, i);
+    }
+
+    public byte[] decrypt(SecretKey dek, int index) throws Exception {
+        verifyIndex(dek);
+        byte[] id = ids.get(index).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(DekCrypto.decryptedSize(lengths[index]));
+        DekCrypto.aeadDecrypt(dek, nonce(noncePrefix, index),
+                ByteBuffer.wrap(envelope, offsets[index], lengths[index]), ByteBuffer.wrap(aad(id, index)), out);
+        return out.array();
+    }
+
+    /** Convenience for restores that received the raw DEK bytes from the server. */
+    public byte[] decrypt(byte[] rawDek, String id) throws Exception {
+        return decrypt(new SecretKeySpec(rawDek, "AES"), id);
+    }
+
+    /** Checks {@code indexTag} once per parsed batch; throws {@code AEADBadTagException} on mismatch. */
+    private void verifyIndex(SecretKey dek) throws Exception {
+        if (indexVerified) return;
+        DekCrypto.aeadDecrypt(dek, nonce(noncePrefix, INDEX_NONCE), ByteBuffer.wrap(envelope, indexEnd, DekCrypto.TAG_SIZE),
+                ByteBuffer.wrap(envelope, 0, indexEnd), ByteBuffer.allocate(0));
+        indexVerified = true;
+    }
+
+    private static byte[] nonce(byte[] prefix, int index) {
+        return ByteBuffer.allocate(DekCrypto.IV_SIZE).put(prefix).putInt(index).array();
+    }
+
+    private static byte[] aad(byte[] id, int index) {
+        return ByteBuffer.allocate(2 + id.length + 4).putShort((short) id.length).put(id).putInt(index).array();
+    }
+}
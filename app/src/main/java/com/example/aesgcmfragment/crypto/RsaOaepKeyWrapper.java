@@ -0,0 +1,53 @@
+package com.example.aesgcmfragment.crypto;
+
+import com.example.aesgcmfragment.metrics.CryptoMetrics;
+import com.example.aesgcmfragment.metrics.CryptoMetrics.Op;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+/** RSA-OAEP-SHA256 wrapping of the raw DEK; the body is the bare RSA ciphertext. */
+public final class RsaOaepKeyWrapper implements KeyWrapper {
+    private static final CryptoContext CTX = CryptoContext.shared();
+
+    private final String keyVersion;
+    private final PublicKey recipient;
+
+    public RsaOaepKeyWrapper(String keyVersion, byte[] recipientX509Der) throws Exception {
+        WrappedDek.header(ALG_RSA_OAEP_SHA256, keyVersion);   // validates keyVersion
+        this.keyVersion = keyVersion;
+        this.recipient = CTX.rsaPublicKey(recipientX509Der);
+    }
+
+    @Override public int algorithm() { return ALG_RSA_OAEP_SHA256; }
+    @Override public String keyVersion() { return keyVersion; }
+
+    @Override public byte[] wrap(SecretKey dek) throws Exception {
+        return WrappedDek.encode(ALG_RSA_OAEP_SHA256, keyVersion, encrypt(recipient, dek));
+    }
+
+    @Override public SecretKey unwrap(PrivateKey recipientPrivate, byte[] wrappedDek) throws Exception {
+        WrappedDek w = WrappedDek.parseFor(this, wrappedDek);
+        Cipher rsa = CTX.rsaOaep();
+        rsa.init(Cipher.DECRYPT_MODE, recipientPrivate);
+        return new SecretKeySpec(rsa.doFinal(w.body()), "AES");
+    }
+
+    /** Bare RSA-OAEP ciphertext of the DEK, as sent by {@link DekCrypto#wrapDekWithRsaOaep}. */
+    static byte[] encrypt(PublicKey recipient, SecretKey dek) throws Exception {
+        long t = CryptoMetrics.start();
+        try {
+            Cipher rsa = CTX.rsaOaep();
+            rsa.init(Cipher.ENCRYPT_MODE, recipient);
+            byte[] wrapped = rsa.doFinal(dek.getEncoded());
+            CryptoMetrics.end(Op.DEK_WRAP, 0, t);
+            return wrapped;
+        } catch (Exception e) {
+            CryptoMetrics.failure(Op.DEK_WRAP, e);
+            throw e;
+        }
+    }
+}
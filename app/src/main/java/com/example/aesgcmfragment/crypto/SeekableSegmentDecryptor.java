@@ -0,0 +1,147 @@
+package com.example.aesgcmfragment.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Random-access reader for the {@link StreamingAead} format. {@link #read(long, ByteBuffer)}
+ * authenticates and decrypts only the segments covering the requested range, so a preview or a
+ * resumed restore costs O(range) instead of O(file).
+ *
+ * <p>{@link #size()} is derived from the ciphertext length; it is only trustworthy once the
+ * final segment has been read, because truncation is detected when that segment is opened.
+ * Instances are safe for use from multiple threads; reads are serialised.
+ */
+public final class SeekableSegmentDecryptor implements Closeable {
+    private final SecretKey key;                 // per-stream subkey, derived from the DEK and header salt
+    private final StreamingAead.Header header;
+    private final byte[] aad;
+    private final Cipher cipher;
+    private final SeekableByteChannel channel;   // null when reading from a mapping
+    private final ByteBuffer mapped;             // null when reading from a channel
+    private final long segmentCount;
+    private final int lastSegmentPtLen;
+    private final byte[] ct;
+    private final byte[] pt;
+    private long cachedSegment = -1;
+    private int cachedLen;
+
+    private SeekableSegmentDecryptor(SecretKey dek, byte[] aad, SeekableByteChannel channel, ByteBuffer mapped, long ctSize) throws Exception {
+        this.channel = channel;
+        this.mapped = mapped;
+        byte[] h = new byte[StreamingAead.HEADER_SIZE];
+        readFully(0, h, h.length);
+        this.header = StreamingAead.Header.parse(ByteBuffer.wrap(h));
+        if ((header.flags & StreamingAead.FLAG_DEFLATE) != 0) {
+            throw new IOException("compressed streams cannot be read at random offsets");
+        }
+        this.aad = header.segmentAad(aad);
+        this.key = header.streamKey(dek);
+        this.cipher = StreamingAead.newCipher();
+
+        int full = header.segmentSize + StreamingAead.TAG_SIZE;
+        long body = ctSize - StreamingAead.HEADER_SIZE;
+        long count = body / full;
+        int rem = (int) (body % full);
+        if (rem == 0 && count > 0) {
+            lastSegmentPtLen = header.segmentSize;
+        } else if (rem >= StreamingAead.TAG_SIZE) {
+            count++;
+            lastSegmentPtLen = rem - StreamingAead.TAG_SIZE;
+        } else {
+            throw new IOException("ciphertext length " + ctSize + " is not a valid segmented stream");
+        }
+        this.segmentCount = count;
+        this.ct = new byte[full];
+        this.pt = new byte[header.segmentSize];
+    }
+
+    public static SeekableSegmentDecryptor open(SecretKey dek, SeekableByteChannel ct, byte[] aad) throws Exception {
+        return new SeekableSegmentDecryptor(dek, aad, ct, null, ct.size());
+    }
+
+    /** Maps {@code ct} read-only (files up to 2 GiB) and serves reads without system calls. */
+    public static SeekableSegmentDecryptor openMapped(SecretKey dek, FileChannel ct, byte[] aad) throws Exception {
+        ByteBuffer map = ct.map(FileChannel.MapMode.READ_ONLY, 0, ct.size());
+        return new SeekableSegmentDecryptor(dek, aad, null, map, map.capacity());
+    }
+
+    /** Plaintext length implied by the ciphertext length. */
+    public long size() {
+        return (segmentCount - 1) * header.segmentSize + lastSegmentPtLen;
+    }
+
+    public int segmentSize() {
+        return header.segmentSize;
+    }
+
+    /** Decrypts {@code [position, position + length)}, clipped to {@link #size()}. */
+    public byte[] read(long position, int length) throws Exception {
+        if (position < 0 || length < 0) throw new IllegalArgumentException("negative position or length");
+        int n = (int) Math.max(0, Math.min(length, size() - position));
+        ByteBuffer out = ByteBuffer.allocate(n);
+        read(position, out);
+        return out.array();
+    }
+
+    /** Fills {@code dst} with plaintext starting at {@code position}; returns bytes read or -1 at end. */
+    public synchronized int read(long position, ByteBuffer dst) throws Exception {
+        if (position < 0) throw new IllegalArgumentException("negative position");
+        if (position >= size()) return dst.hasRemaining() ? -1 : 0;
+        int total = 0;
+        while (dst.hasRemaining() && position < size()) {
+            long index = position / header.segmentSize;
+            int within = (int) (position % header.segmentSize);
+            int len = decryptSegment(index);
+            int n = Math.min(dst.remaining(), len - within);
+            dst.put(pt, within, n);
+            position += n;
+            total += n;
+        }
+        return total;
+    }
+
+    @Override public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+
+    private int decryptSegment(long index) throws Exception {
+        if (index == cachedSegment) return cachedLen;
+        boolean last = index == segmentCount - 1;
+        int ctLen = (last ? lastSegmentPtLen : header.segmentSize) + StreamingAead.TAG_SIZE;
+        long offset = StreamingAead.HEADER_SIZE + index * (header.segmentSize + StreamingAead.TAG_SIZE);
+        readFully(offset, ct, ctLen);
+        cachedSegment = -1;
+        cachedLen = StreamingAead.open(cipher, key, header, aad, index, last, ct, 0, ctLen, pt, 0);
+        cachedSegment = index;
+        return cachedLen;
+    }
+
+    private void readFully(long offset, byte[] b, int len) throws IOException {
+        if (mapped != null) {
+            if (offset + len > mapped.capacity()) throw new EOFException();
+            ByteBuffer src = mapped.duplicate();
+            src.position((int) offset);
+            src.get(b, 0, len);
+            return;
+        }
+        ByteBuffer dst = ByteBuffer.wrap(b, 0, len);
+        if (channel instanceof FileChannel) {
+            FileChannel fc = (FileChannel) channel;
+            while (dst.hasRemaining()) {
+                if (fc.read(dst, offset + dst.position()) < 0) throw new EOFException();
+            }
+        } else {
+            channel.position(offset);
+            while (dst.hasRemaining()) {
+                if (channel.read(dst) < 0) throw new EOFException();
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.aesgcmfragment.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decrypts the {@link StreamingAead} format one segment at a time. Plaintext of a segment is
+ * only released after its tag has been verified; a truncated or reordered stream fails with an
+ * {@link IOException} whose cause is the underlying {@code AEADBadTagException}.
+ */
+public final class SegmentDecryptingInputStream extends InputStream {
+    private final InputStream in;
+    private final SecretKey key;       // per-stream subkey, see StreamingAead.Header#streamKey
+    private final StreamingAead.Header header;
+    private final byte[] aad;
+    private final Cipher cipher;
+    private final byte[] ct;   // one full ciphertext segment plus one byte of look-ahead
+    private final byte[] pt;
+    private int ctLen;
+    private int ptPos, ptLen;
+    private long segment;
+    private boolean done, closed;
+
+    SegmentDecryptingInputStream(SecretKey dek, StreamingAead.Header header, byte[] aad, InputStream in) throws Exception {
+        this.in = in;
+        this.key = header.streamKey(dek);
+        this.header = header;
+        this.aad = header.segmentAad(aad);
+        this.cipher = StreamingAead.newCipher();
+        this.ct = new byte[header.segmentSize + StreamingAead.TAG_SIZE + 1];
+        this.pt = new byte[header.segmentSize];
+    }
+
+    /** Header flags of the stream being read. */
+    public int flags() {
+        return header.flags;
+    }
+
+    @Override public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("stream closed");
+        if ((off | len) < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (len == 0) return 0;
+        while (ptPos == ptLen) {
+            if (done) return -1;
+            openNextSegment();
+        }
+        int n = Math.min(len, ptLen - ptPos);
+        System.arraycopy(pt, ptPos, b, off, n);
+        ptPos += n;
+        return n;
+    }
+
+    @Override public int available() {
+        return ptLen - ptPos;
+    }
+
+    @Override public void close() throws IOException {
+        closed = true;
+        in.close();
+    }
+
+    private void openNextSegment() throws IOException {
+        int full = ct.length - 1;
+        while (ctLen < ct.length) {
+            int r = in.read(ct, ctLen, ct.length - ctLen);
+            if (r < 0) break;
+            ctLen += r;
+        }
+        boolean last = ctLen <= full;
+        int segLen = last ? ctLen : full;
+        if (segLen < StreamingAead.TAG_SIZE) throw new IOException("truncated segment " + segment);
+        try {
+            ptLen = StreamingAead.open(cipher, key, header, aad, segment, last, ct, 0, segLen, pt, 0);
+        } catch (Exception e) {
+            throw new IOException("segment " + segment + " failed authentication", e);
+        }
+        ptPos = 0;
+        segment++;
+        if (last) {
+            done = true;
+            ctLen = 0;
+        } else {
+            ct[0] = ct[full]; // carry the look-ahead byte into the next segment
+            ctLen = 1;
+        }
+    }
+}
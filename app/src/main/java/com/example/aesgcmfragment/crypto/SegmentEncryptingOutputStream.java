@@ -0,0 +1,85 @@
+package com.example.aesgcmfragment.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encrypts into the {@link StreamingAead} format. Memory use is two segment buffers, regardless
+ * of how much is written. {@link #close()} must be called: it seals the final segment.
+ */
+public final class SegmentEncryptingOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final SecretKey key;       // per-stream subkey, see StreamingAead.Header#streamKey
+    private final StreamingAead.Header header;
+    private final byte[] aad;
+    private final Cipher cipher;
+    private final byte[] pt;
+    private final byte[] ct;
+    private int ptLen;
+    private long segment;
+    private boolean closed;
+
+    SegmentEncryptingOutputStream(SecretKey dek, StreamingAead.Header header, byte[] aad, OutputStream out) throws Exception {
+        this.out = out;
+        this.key = header.streamKey(dek);
+        this.header = header;
+        this.aad = header.segmentAad(aad);
+        this.cipher = StreamingAead.newCipher();
+        this.pt = new byte[header.segmentSize];
+        this.ct = new byte[header.segmentSize + StreamingAead.TAG_SIZE];
+        out.write(header.encode());
+    }
+
+    @Override public void write(int b) throws IOException {
+        ensureOpen();
+        if (ptLen == pt.length) sealSegment(false); // a full buffer is only final once close() says so
+        pt[ptLen++] = (byte) b;
+    }
+
+    @Override public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if ((off | len) < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        while (len > 0) {
+            if (ptLen == pt.length) sealSegment(false);
+            int n = Math.min(len, pt.length - ptLen);
+            System.arraycopy(b, off, pt, ptLen, n);
+            ptLen += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Flushes completed segments only; the buffered tail is sealed on {@link #close()}. */
+    @Override public void flush() throws IOException {
+        ensureOpen();
+        out.flush();
+    }
+
+    @Override public void close() throws IOException {
+        if (closed) return;
+        try {
+            sealSegment(true);
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    private void sealSegment(boolean last) throws IOException {
+        int n;
+        try {
+            n = StreamingAead.seal(cipher, key, header, aad, segment, last, pt, 0, ptLen, ct, 0);
+        } catch (Exception e) {
+            throw new IOException("failed to encrypt segment " + segment, e);
+        }
+        out.write(ct, 0, n);
+        segment++;
+        ptLen = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("stream closed");
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.aesgcmfragment.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Segmented streaming AEAD (STREAM construction) on top of AES-GCM.
+ *
+ * <p>Layout: {@code header || seg_0 || seg_1 || ... || seg_n}. The header is
+ * {@code version(1) | flags(1) | segmentSize(4) | salt(32) | noncePrefix(7)}. Every segment carries
+ * {@code segmentSize} plaintext bytes (the last one 0..segmentSize) followed by its own
+ * 16-byte tag. The nonce of segment {@code i} is {@code noncePrefix || i (4, BE) || last (1)},
+ * so reordering, truncation and extension are all detected. The header and the caller's AAD
+ * are authenticated as AAD of every segment. With {@link #FLAG_DEFLATE} the segments carry a
+ * zlib stream of the plaintext rather than the plaintext itself.
+ *
+ * <p>As in Tink's AES-GCM-HKDF streaming AEAD, segments are not sealed under the DEK itself but
+ * under a per-stream subkey {@code HKDF-SHA256(ikm = DEK, salt, info = label)} with a random
+ * 256-bit salt from the header. Nonces therefore only need to be unique within one stream, and a
+ * DEK can encrypt any number of streams; the random nonce prefix is defence in depth.
+ */
+public final class StreamingAead {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    public static final int MIN_SEGMENT_SIZE = 1024;
+    public static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final int TAG_SIZE = 16;
+    /** Header flag: the segment plaintext is Deflate (zlib) compressed. */
+    public static final int FLAG_DEFLATE = 0x01;
+
+    static final byte VERSION = 2;     // 1 sealed segments under the DEK directly
+    static final int SALT_SIZE = 32;
+    static final int NONCE_PREFIX_SIZE = 7;
+    static final int HEADER_SIZE = 1 + 1 + 4 + SALT_SIZE + NONCE_PREFIX_SIZE;
+    private static final byte[] SUBKEY_INFO = "aesgcmfragment stream subkey v2".getBytes(StandardCharsets.US_ASCII);
+    static final long MAX_SEGMENTS = 1L << 32;
+
+    private static final SecureRandom RNG = new SecureRandom();
+
+    private StreamingAead() {}
+
+    public static SegmentEncryptingOutputStream newEncryptingStream(SecretKey dek, OutputStream ct, byte[] aad) throws Exception {
+        return newEncryptingStream(dek, ct, aad, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public static SegmentEncryptingOutputStream newEncryptingStream(SecretKey dek, OutputStream ct, byte[] aad, int segmentSize) throws Exception {
+        return new SegmentEncryptingOutputStream(dek, Header.create(0, segmentSize), aad, ct);
+    }
+
+    public static SegmentDecryptingInputStream newDecryptingStream(SecretKey dek, InputStream ct, byte[] aad) throws Exception {
+        return new SegmentDecryptingInputStream(dek, Header.read(ct), aad, ct);
+    }
+
+    /**
+     * Like {@link #newEncryptingStream} but deflates the data first when a sample of it shows
+     * that pays off. The stream can no longer be read at random offsets.
+     */
+    public static CompressingEncryptingOutputStream newCompressingStream(SecretKey dek, OutputStream ct, byte[] aad, int segmentSize) {
+        return new CompressingEncryptingOutputStream(dek, ct, aad, segmentSize);
+    }
+
+    /** Decrypts any stream and, if its header has {@link #FLAG_DEFLATE}, inflates it too. */
+    public static InputStream newDecompressingStream(SecretKey dek, InputStream ct, byte[] aad) throws Exception {
+        SegmentDecryptingInputStream in = newDecryptingStream(dek, ct, aad);
+        if ((in.flags() & FLAG_DEFLATE) == 0) return in;
+        Inflater inflater = new Inflater();
+        return new InflaterInputStream(in, inflater, 8192) {
+            @Override public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    public static WritableByteChannel newEncryptingChannel(SecretKey dek, WritableByteChannel ct, byte[] aad) throws Exception {
+        return Channels.newChannel(newEncryptingStream(dek, Channels.newOutputStream(ct), aad));
+    }
+
+    public static ReadableByteChannel newDecryptingChannel(SecretKey dek, ReadableByteChannel ct, byte[] aad) throws Exception {
+        return Channels.newChannel(newDecryptingStream(dek, Channels.newInputStream(ct), aad));
+    }
+
+    /** A fresh encoded stream header (random salt and nonce prefix) for use with {@link SegmentCodec}. */
+    public static byte[] newHeader(int segmentSize) {
+        return Header.create(0, segmentSize).encode();
+    }
+
+    /** Exact ciphertext length (header included) for a plaintext of {@code plaintextSize} bytes. */
+    public static long ciphertextSize(long plaintextSize, int segmentSize) {
+        long segments = Math.max(1, (plaintextSize + segmentSize - 1) / segmentSize);
+        return HEADER_SIZE + plaintextSize + segments * TAG_SIZE;
+    }
+
+    /** Seals one segment under the stream key: {@code ct[ctOff..] = GCM(pt[ptOff..ptOff+len])}; returns bytes written. */
+    static int seal(Cipher c, SecretKey key, Header h, byte[] aad, long index, boolean last,
+                    byte[] pt, int ptOff, int len, byte[] ct, int ctOff) throws Exception {
+        c.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, h.nonce(index, last)));
+        c.updateAAD(aad);
+        return c.doFinal(pt, ptOff, len, ct, ctOff);
+    }
+
+    /** Opens one segment: {@code pt[ptOff..] = GCM^-1(ct[ctOff..ctOff+len])}; returns bytes written. */
+    static int open(Cipher c, SecretKey key, Header h, byte[] aad, long index, boolean last,
+                    byte[] ct, int ctOff, int len, byte[] pt, int ptOff) throws Exception {
+        c.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, h.nonce(index, last)));
+        c.updateAAD(aad);
+        return c.doFinal(ct, ctOff, len, pt, ptOff);
+    }
+
+    static Cipher newCipher() throws Exception {
+        return Cipher.getInstance("AES/GCM/NoPadding");
+    }
+
+    /**
+     * Seals and opens individual segments of one stream, for callers that move segments around
+     * themselves (chunked uploads, resumable restores). Thread-safe: each call uses the calling
+     * thread's cipher from {@link CryptoContext#shared()}.
+     *
+     * <p>Each index must be sealed at most once per header: sealing it again reuses its GCM nonce
+     * (the cached cipher rejects that outright). A resumed upload must resend the ciphertext it
+     * kept from the first seal, as {@code ChunkedBackupUploader} does, never re-encrypt.
+     */
+    public static final class SegmentCodec {
+        private final SecretKey key;
+        private final Header header;
+        private final byte[] aad;
+
+        public SegmentCodec(SecretKey dek, byte[] encodedHeader, byte[] aad) throws Exception {
+            this.header = Header.parse(ByteBuffer.wrap(encodedHeader));
+            this.key = header.streamKey(dek);
+            this.aad = header.segmentAad(aad);
+        }
+
+        public int segmentSize() {
+            return header.segmentSize;
+        }
+
+        public byte[] seal(long index, boolean last, byte[] pt, int off, int len) throws Exception {
+            if (len > header.segmentSize) throw new IllegalArgumentException("segment too large");
+            byte[] ct = new byte[len + TAG_SIZE];
+            StreamingAead.seal(CryptoContext.shared().gcm(), key, header, aad, index, last, pt, off, len, ct, 0);
+            return ct;
+        }
+
+        public byte[] open(long index, boolean last, byte[] ct, int off, int len) throws Exception {
+            if (len < TAG_SIZE) throw new IOException("truncated segment " + index);
+            byte[] pt = new byte[len - TAG_SIZE];
+            StreamingAead.open(CryptoContext.shared().gcm(), key, header, aad, index, last, ct, off, len, pt, 0);
+            return pt;
+        }
+    }
+
+    /** Stream header; its encoding is bound into every segment's AAD. */
+    static final class Header {
+        final int flags;
+        final int segmentSize;
+        final byte[] salt;
+        final byte[] noncePrefix;
+
+        Header(int flags, int segmentSize, byte[] salt, byte[] noncePrefix) {
+            if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+                throw new IllegalArgumentException("segmentSize out of range: " + segmentSize);
+            }
+            if (salt.length != SALT_SIZE) throw new IllegalArgumentException("salt must be 32 bytes");
+            if (noncePrefix.length != NONCE_PREFIX_SIZE) throw new IllegalArgumentException("noncePrefix must be 7 bytes");
+            this.flags = flags;
+            this.segmentSize = segmentSize;
+            this.salt = salt.clone();
+            this.noncePrefix = noncePrefix.clone();
+        }
+
+        static Header create(int flags, int segmentSize) {
+            byte[] salt = new byte[SALT_SIZE];
+            byte[] prefix = new byte[NONCE_PREFIX_SIZE];
+            RNG.nextBytes(salt);
+            RNG.nextBytes(prefix);
+            return new Header(flags, segmentSize, salt, prefix);
+        }
+
+        /** The key every segment of this stream is sealed under; same length as the DEK. */
+        SecretKey streamKey(SecretKey dek) throws Exception {
+            byte[] ikm = dek.getEncoded();
+            byte[] okm = EcdhKeyWrapper.hkdfSha256(ikm, salt, SUBKEY_INFO, ikm.length);
+            try {
+                return new SecretKeySpec(okm, "AES");
+            } finally {
+                Arrays.fill(ikm, (byte) 0);
+                Arrays.fill(okm, (byte) 0);
+            }
+        }
+
+        static Header read(InputStream in) throws IOException {
+            byte[] b = new byte[HEADER_SIZE];
+            int n = 0;
+            while (n < b.length) {
+                int r = in.read(b, n, b.length - n);
+                if (r < 0) throw new EOFException("truncated stream header");
+                n += r;
+            }
+            return parse(ByteBuffer.wrap(b));
+        }
+
+        static Header parse(ByteBuffer b) throws IOException {
+            if (b.remaining() < HEADER_SIZE) throw new EOFException("truncated stream header");
+            byte version = b.get();
+            if (version != VERSION) throw new IOException("unsupported stream version " + version);
+            int flags = b.get() & 0xFF;
+            if ((flags & ~FLAG_DEFLATE) != 0) throw new IOException("unsupported stream flags " + flags);
+            int segmentSize = b.getInt();
+            byte[] salt = new byte[SALT_SIZE];
+            b.get(salt);
+            byte[] prefix = new byte[NONCE_PREFIX_SIZE];
+            b.get(prefix);
+            try {
+                return new Header(flags, segmentSize, salt, prefix);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("malformed stream header", e);
+            }
+        }
+
+        byte[] encode() {
+            return ByteBuffer.allocate(HEADER_SIZE)
+                    .put(VERSION)
+                    .put((byte) flags)
+                    .putInt(segmentSize)
+                    .put(salt)
+                    .put(noncePrefix)
+                    .array();
+        }
+
+        /** AAD fed to every segment: {@code header || aad}. */
+        byte[] segmentAad(byte[] aad) {
+            byte[] h = encode();
+            if (aad == null || aad.length == 0) return h;
+            byte[] out = Arrays.copyOf(h, h.length + aad.length);
+            System.arraycopy(aad, 0, out, h.length, aad.length);
+            return out;
+        }
+
+        byte[] nonce(long index, boolean last) {
+            if (index < 0 || index >= MAX_SEGMENTS) throw new IllegalStateException("segment index out of range: " + index);
+            return ByteBuffer.allocate(12)
+                    .put(noncePrefix)
+                    .putInt((int) index)
+                    .put((byte) (last ? 1 : 0))
+                    .array();
+        }
+    }
+}
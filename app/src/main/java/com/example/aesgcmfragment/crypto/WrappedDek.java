@@ -0,0 +1,73 @@
+package com.example.aesgcmfragment.crypto;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Self-describing wrapped DEK produced by a {@link KeyWrapper}.
+ *
+ * <p>Layout: {@code version(1) | algorithm(1) | keyVersionLen(1) | keyVersion(UTF-8) | body}.
+ * The body is algorithm specific; {@link #header()} is the part before it, which wrappers that
+ * use AEAD authenticate as AAD.
+ */
+public final class WrappedDek {
+    public static final byte VERSION = 1;
+
+    private final int algorithm;
+    private final String keyVersion;
+    private final byte[] header;
+    private final byte[] body;
+
+    private WrappedDek(int algorithm, String keyVersion, byte[] header, byte[] body) {
+        this.algorithm = algorithm;
+        this.keyVersion = keyVersion;
+        this.header = header;
+        this.body = body;
+    }
+
+    public static byte[] encode(int algorithm, String keyVersion, byte[] body) {
+        byte[] header = header(algorithm, keyVersion);
+        return ByteBuffer.allocate(header.length + body.length).put(header).put(body).array();
+    }
+
+    public static WrappedDek parse(byte[] encoded) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(encoded);
+            byte version = in.get();
+            if (version != VERSION) throw new IllegalArgumentException("unsupported wrapped DEK version " + version);
+            int algorithm = in.get() & 0xFF;
+            byte[] kv = new byte[in.get() & 0xFF];
+            in.get(kv);
+            byte[] header = new byte[in.position()];
+            System.arraycopy(encoded, 0, header, 0, header.length);
+            byte[] body = new byte[in.remaining()];
+            in.get(body);
+            return new WrappedDek(algorithm, new String(kv, StandardCharsets.UTF_8), header, body);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated wrapped DEK", e);
+        }
+    }
+
+    static byte[] header(int algorithm, String keyVersion) {
+        if (algorithm < 0 || algorithm > 0xFF) throw new IllegalArgumentException("algorithm out of range");
+        byte[] kv = keyVersion.getBytes(StandardCharsets.UTF_8);
+        if (kv.length > 0xFF) throw new IllegalArgumentException("keyVersion too long");
+        return ByteBuffer.allocate(3 + kv.length).put(VERSION).put((byte) algorithm).put((byte) kv.length).put(kv).array();
+    }
+
+    public int algorithm() { return algorithm; }
+    public String keyVersion() { return keyVersion; }
+    public byte[] header() { return header.clone(); }
+    public byte[] body() { return body.clone(); }
+
+    /** Parses {@code encoded} and checks it was made by {@code wrapper}'s algorithm and key version. */
+    static WrappedDek parseFor(KeyWrapper wrapper, byte[] encoded) {
+        WrappedDek w = parse(encoded);
+        if (w.algorithm != wrapper.algorithm() || !w.keyVersion.equals(wrapper.keyVersion())) {
+            throw new IllegalArgumentException("wrapped DEK is for algorithm " + w.algorithm + " / key " + w.keyVersion
+                    + ", not " + wrapper.algorithm() + " / " + wrapper.keyVersion());
+        }
+        return w;
+    }
+}
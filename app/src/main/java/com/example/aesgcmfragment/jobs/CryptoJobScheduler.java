@@ -0,0 +1,227 @@
+package com.example.aesgcmfragment.jobs;
+
+import com.example.aesgcmfragment.metrics.CryptoMetrics;
+import com.example.aesgcmfragment.metrics.CryptoMetrics.Op;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide scheduler for crypto and I/O jobs, independent of any Activity or Fragment
+ * lifecycle. Jobs are queued by {@link Priority} (then FIFO), can be cancelled through their
+ * future, and a job submitted with the same non-null key as one still queued is merged into
+ * it. Jobs in the same lane run one at a time, in submission order. Results are delivered
+ * through {@link CompletableFuture}; use {@code whenCompleteAsync(callback, mainThreadExecutor)}
+ * to get them on the UI thread.
+ *
+ * <p>Plain Java, so it runs and is tested on the JVM. The {@link ThreadFactory} is pluggable:
+ * a virtual-thread factory can be passed on JVMs that have one.
+ */
+public final class CryptoJobScheduler {
+    public enum Priority {
+        INTERACTIVE,    // user is waiting on the screen: decrypt, encrypt of typed text
+        BACKGROUND      // backups, restores, compaction
+    }
+
+    private static volatile CryptoJobScheduler shared;
+
+    private final ThreadPoolExecutor pool;
+    private final ConcurrentHashMap<String, Keyed<?>> byKey = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Task<?>> laneTails = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public CryptoJobScheduler(int threads) {
+        this(threads, daemonThreads());
+    }
+
+    public CryptoJobScheduler(int threads, ThreadFactory threadFactory) {
+        pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), threadFactory);
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /** Lazily created scheduler shared by the whole process; it is never shut down. */
+    public static CryptoJobScheduler shared() {
+        CryptoJobScheduler s = shared;
+        if (s == null) {
+            synchronized (CryptoJobScheduler.class) {
+                s = shared;
+                if (s == null) {
+                    s = new CryptoJobScheduler(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+                    shared = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    public <T> CompletableFuture<T> submit(Priority priority, Callable<T> job) {
+        return submit(null, null, priority, job);
+    }
+
+    public <T> CompletableFuture<T> submit(String key, Priority priority, Callable<T> job) {
+        return submit(key, null, priority, job);
+    }
+
+    /**
+     * Queues {@code job}. If {@code key} is non-null and a job with the same key is queued but
+     * has not started, nothing new is queued and the caller gets a view of that job's result. A
+     * job that has already started may have read state older than this call, so it is never
+     * joined. Cancelling a view detaches only that caller; cancelling the original future cancels
+     * the job (and interrupts it if it is already running).
+     *
+     * <p>If {@code lane} is non-null, the job is not queued until the previous job in that lane
+     * has finished, so jobs sharing state (such as one file) never overlap or reorder. A keyed job
+     * only merges into the last job of its lane, so it never runs ahead of a job submitted
+     * between the two.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(String key, String lane, Priority priority, Callable<T> job) {
+        if (key == null) return enqueue(lane, priority, job).future;
+        while (true) {
+            Keyed<?> existing = byKey.get(key);
+            if (existing != null && !existing.placeholder.isDone() && mergeable(existing, lane)) {
+                return view((CompletableFuture<T>) existing.placeholder);
+            }
+            Keyed<T> mine = new Keyed<>(lane);
+            boolean won = existing == null
+                    ? byKey.putIfAbsent(key, mine) == null
+                    : byKey.replace(key, existing, mine);
+            if (!won) continue;
+            Task<T> task = enqueue(lane, priority, job);
+            mine.task = task;
+            wire(task.future, mine.placeholder);
+            mine.placeholder.whenComplete((r, e) -> {
+                if (mine.placeholder.isCancelled()) task.future.cancel(true);
+                byKey.remove(key, mine);
+            });
+            return mine.placeholder;
+        }
+    }
+
+    /** Jobs queued but not yet started. */
+    public int queued() {
+        return pool.getQueue().size();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private boolean mergeable(Keyed<?> existing, String lane) {
+        if (!Objects.equals(existing.lane, lane)) return false;
+        Task<?> task = existing.task;
+        if (task == null) return true;                  // another caller is queueing it right now
+        return !task.started() && (lane == null || laneTails.get(lane) == task);
+    }
+
+    private <T> Task<T> enqueue(String lane, Priority priority, Callable<T> job) {
+        Task<T> task = new Task<>(priority, sequence.getAndIncrement(), job);
+        task.future.whenComplete((r, e) -> {
+            if (task.future.isCancelled()) task.interruptIfRunning();
+        });
+        if (lane == null) {
+            pool.execute(task);
+            return task;
+        }
+        laneTails.compute(lane, (l, tail) -> {
+            if (tail == null) pool.execute(task);
+            else tail.finished.whenComplete((r, e) -> pool.execute(task));
+            return task;
+        });
+        task.finished.whenComplete((r, e) -> laneTails.remove(lane, task));
+        return task;
+    }
+
+    private static <T> CompletableFuture<T> view(CompletableFuture<T> source) {
+        CompletableFuture<T> v = new CompletableFuture<>();
+        wire(source, v);
+        return v;
+    }
+
+    private static <T> void wire(CompletableFuture<T> from, CompletableFuture<T> to) {
+        from.whenComplete((r, e) -> {
+            if (e != null) to.completeExceptionally(e);
+            else to.complete(r);
+        });
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "crypto-job-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static final class Keyed<T> {
+        final CompletableFuture<T> placeholder = new CompletableFuture<>();
+        final String lane;
+        volatile Task<T> task;                          // null until queued
+
+        Keyed(String lane) {
+            this.lane = lane;
+        }
+    }
+
+    private static final class Task<T> implements Runnable, Comparable<Task<?>> {
+        final Priority priority;
+        final long seq;
+        final Callable<T> job;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final CompletableFuture<Void> finished = new CompletableFuture<>();  // run() returned
+        final long queuedAt = CryptoMetrics.start();
+        private Thread runner;
+        private boolean started;
+
+        Task(Priority priority, long seq, Callable<T> job) {
+            this.priority = priority;
+            this.seq = seq;
+            this.job = job;
+        }
+
+        @Override public int compareTo(Task<?> o) {
+            int c = priority.compareTo(o.priority);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+
+        @Override public void run() {
+            try {
+                CryptoMetrics.end(Op.QUEUE_WAIT, 0, queuedAt);
+                synchronized (this) {
+                    if (future.isDone()) return;  // cancelled while queued
+                    runner = Thread.currentThread();
+                    started = true;
+                }
+                try {
+                    future.complete(job.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    synchronized (this) {
+                        runner = null;
+                        Thread.interrupted(); // do not leak a late cancel into the next job
+                    }
+                }
+            } finally {
+                finished.complete(null);
+            }
+        }
+
+        synchronized boolean started() {
+            return started;
+        }
+
+        synchronized void interruptIfRunning() {
+            if (runner != null) runner.interrupt();
+        }
+    }
+}
@@ -13,6 +13,7 @@ import android.content.SharedPreferences;    // Simple key–value persistence
 import android.os.Bundle;                    // Saved instance state bundle
 import android.os.Handler;                   // Post work back to main thread
 import android.os.Looper;                    // Main thread looper
+import android.security.keystore.KeyPermanentlyInvalidatedException; // Keystore key invalidated by a lock screen change
 import android.util.Base64;                  // Base64 encode/decode helpers
 import android.view.LayoutInflater;          // Inflate XML layouts
 import android.view.View;                    // Base class for UI widgets
@@ -26,13 +27,22 @@ import androidx.annotation.Nullable;         // Nullability annotations
 import androidx.fragment.app.Fragment;       // AndroidX Fragment base class
 
 import com.example.aesgcmfragment.R;         // Generated resources (layouts, strings, etc.)
-
+import com.example.aesgcmfragment.crypto.Compression;   // Optional Deflate before encryption
+import com.example.aesgcmfragment.crypto.Envelope;      // Binary IV/CT container
+import com.example.aesgcmfragment.jobs.CryptoJobScheduler;          // Process-wide, lifecycle-independent job queue
+import com.example.aesgcmfragment.jobs.CryptoJobScheduler.Priority; // Interactive vs background priority
+import com.example.aesgcmfragment.metrics.CryptoMetrics;    // Optional latency/failure instrumentation
+import com.example.aesgcmfragment.metrics.CryptoMetrics.Op; // Instrumented operation names
+import com.example.aesgcmfragment.store.EnvelopeStore;  // File-backed envelope persistence
+
+import java.io.File;                         // Directory for the envelope store
+import java.io.IOException;                  // Envelope store read/write failures
+
+import java.security.InvalidKeyException;   // Keystore key deleted or invalidated
 import java.security.Key;                    // Generic key type
 import java.security.KeyStore;               // AndroidKeyStore access
+import java.security.MessageDigest;          // Digest of the text for the encrypt job key
 import java.text.MessageFormat;              // Safe string formatting
-import java.util.concurrent.ExecutorService; // Background thread pool interface
-import java.util.concurrent.Executors;       // Factory for executors
-import java.util.concurrent.atomic.AtomicBoolean; // Thread-safe flag for debouncing
 
 import javax.crypto.Cipher;                  // JCA cipher API
 import javax.crypto.KeyGenerator;            // Key generator for AES keys
@@ -42,16 +52,22 @@ import javax.crypto.spec.GCMParameterSpec;   // Holds IV + tag length for GCM
 public class AesGcmFragment extends Fragment { // Fragment implementing AES-GCM demo UI/logic
 
     private static final String KEY_ALIAS = "pii_key"; // Alias used to store/fetch key in AndroidKeyStore
-    private static final String PREFS = "crypto_demo"; // SharedPreferences file name
-    private static final String PREF_IV = "iv_b64";    // Key for persisted IV (Base64)
-    private static final String PREF_CT = "ct_b64";    // Key for persisted ciphertext (Base64)
+    private static final String PREFS = "crypto_demo"; // Legacy SharedPreferences file (read-only fallback)
+    private static final String PREF_IV = "iv_b64";    // Legacy key for persisted IV (Base64)
+    private static final String PREF_CT = "ct_b64";    // Legacy key for persisted ciphertext (Base64)
+    private static final String ENVELOPE_DIR = "envelopes";  // Subdirectory of filesDir for the envelope store
+    private static final String ENVELOPE_NAME = "last";      // Name of the single demo envelope
+    private static final String ENVELOPE_LANE = "envelope";  // Scheduler lane: envelope jobs run one at a time, in click order
     private static final int MAX_INPUT_BYTES = 256 * 1024; // 256 KiB demo cap to avoid long work on slow devices
 
-    private byte[] lastIv, lastCt;                     // In-memory copies of the most recent IV and ciphertext
+    private static final ThreadLocal<Cipher> KEYSTORE_GCM = new ThreadLocal<>(); // Reused GCM cipher per scheduler thread
+    private static volatile SecretKey keystoreKey;     // Memoised AndroidKeyStore handle (loading the keystore is slow)
+
+    private final Object stateLock = new Object();     // Guards `last` / `lastIsLegacy` across job threads
+    private Envelope last;                             // In-memory copy of the most recent envelope (IV + ciphertext)
+    private boolean lastIsLegacy;                      // True if `last` came from pre-envelope prefs (no AAD)
 
-    private final ExecutorService cryptoExec = Executors.newSingleThreadExecutor(); // Serial background worker for crypto/I/O
     private final Handler main = new Handler(Looper.getMainLooper());               // Handler to post results back to UI thread
-    private final AtomicBoolean busy = new AtomicBoolean(false);                    // Debounce flag to prevent overlapping jobs
 
     @SuppressLint("DefaultLocale") // We control formatting; suppress default locale lint for String.format usage
     @Nullable
@@ -65,135 +81,250 @@ public class AesGcmFragment extends Fragment { // Fragment implementing AES-GCM
         Button btnDecrypt = v.findViewById(R.id.btnDecrypt);       // “Decrypt” button
 
         btnEncrypt.setOnClickListener(b -> {                       // Handle encrypt clicks
-            if (!busy.compareAndSet(false, true)) return;          // If already working, ignore (debounce)
             out.setText(R.string.encrypting);                      // Tell the user we’ve started
 
-            final byte[] ptBytes = input.getText().toString()      // Read plaintext from UI
-                    .getBytes(java.nio.charset.StandardCharsets.UTF_8); // Encode as UTF-8 bytes
+            final String text = input.getText().toString();        // Read plaintext from UI
+            final byte[] ptBytes = text.getBytes(java.nio.charset.StandardCharsets.UTF_8); // Encode as UTF-8 bytes
             if (ptBytes.length > MAX_INPUT_BYTES) {                // Guard against very large inputs
-                busy.set(false);                                   // Clear busy flag
                 out.setText(String.format(                         // Show a friendly size error
                         "Input too large (%d bytes). Limit is ~%d bytes for this demo.",
                         ptBytes.length, MAX_INPUT_BYTES));
                 return;                                            // Abort this run
             }
 
-            cryptoExec.execute(() -> {                              // Do crypto + persistence off the UI thread
-                try {
-                    SecretKey key = ensureKey();                    // Fetch or create the AES key in AndroidKeyStore
-
-                    Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding"); // Configure AES-GCM with no padding
-                    // IMPORTANT: Do NOT supply an IV when encrypting with randomized encryption required.
-                    cipher.init(Cipher.ENCRYPT_MODE, key);          // Initialises for encrypt; Keystore enforces random IV
-
-                    // Optional AAD binds context (must be repeated on decrypt if used):
-                    // cipher.updateAAD(CryptoUtils.utf8("user123"));
-
-                    byte[] ct = cipher.doFinal(ptBytes);            // Encrypts and appends 128-bit tag to the output
-                    byte[] iv = cipher.getIV();                     // Retrieve the fresh, random 12-byte IV used
-
-                    // Persist results (still off UI thread) so we can decrypt later even after process death
-                    SharedPreferences prefs = requireContext()
-                            .getSharedPreferences(PREFS, Context.MODE_PRIVATE); // Open/create our prefs file
-                    prefs.edit()
-                            .putString(PREF_IV, CryptoUtils.b64(iv)) // Store IV as Base64
-                            .putString(PREF_CT, CryptoUtils.b64(ct)) // Store ciphertext+tag as Base64
-                            .apply();                                // Apply asynchronously
-
-                    lastIv = iv;                                     // Keep in memory for quick decrypt
-                    lastCt = ct;                                     // Keep in memory for quick decrypt
-
-                    postToUi(() -> {                                 // Back to UI thread to update the screen
-                        out.setText(                                  // Show IV and ciphertext (Base64)
+            final File dir = envelopeDir();                        // Resolve now: the job must not need our Context
+            // Same text clicked twice while still queued merges into one job instead of being dropped
+            CryptoJobScheduler.shared()
+                    .submit(encryptJobKey(ptBytes), ENVELOPE_LANE, Priority.INTERACTIVE, () -> encrypt(ptBytes, dir))
+                    .whenCompleteAsync((ivAndCt, e) -> {           // Runs on the UI thread via postToUi
+                        if (e != null) {                           // Any exception during encrypt/persist
+                            Throwable cause = unwrap(e);           // Already counted under the failing step's Op
+                            out.setText(getString(R.string.error_generic, cause.toString()));
+                            return;
+                        }
+                        out.setText(                                // Show IV and ciphertext (Base64)
                                 MessageFormat.format("{0}\n{1}",
-                                        getString(R.string.iv_b64, CryptoUtils.b64(iv)),
-                                        getString(R.string.ct_b64, CryptoUtils.b64(ct)))
-                        );
-                    });
-                } catch (Exception e) {                              // Any exception during encrypt/persist
-                    postToUi(() -> out.setText(                      // Show a user-friendly message with details
-                            getString(R.string.error_generic, e.toString())));
-                } finally {
-                    busy.set(false);                                 // Always release the debounce flag
-                }
-            });
+                                        getString(R.string.iv_b64, ivAndCt[0]),
+                                        getString(R.string.ct_b64, ivAndCt[1])));
+                    }, this::postToUi);
         });
 
         btnDecrypt.setOnClickListener(b -> {                         // Handle decrypt clicks
-            if (!busy.compareAndSet(false, true)) return;            // Debounce concurrent presses
             out.setText(R.string.decrypting);                        // Inform the user we’ve started
 
-            cryptoExec.execute(() -> {                               // Do work off the UI thread
-                try {
-                    // If in-memory copies are missing, try to restore from SharedPreferences
-                    if (lastIv == null || lastCt == null) {
-                        SharedPreferences prefs = requireContext()
-                                .getSharedPreferences(PREFS, Context.MODE_PRIVATE); // Open prefs
-                        String ivB64 = prefs.getString(PREF_IV, null);              // Read stored IV
-                        String ctB64 = prefs.getString(PREF_CT, null);              // Read stored CT
-                        if (ivB64 != null && ctB64 != null) {
-                            lastIv = Base64.decode(ivB64, Base64.DEFAULT);          // Decode IV from Base64
-                            lastCt = Base64.decode(ctB64, Base64.DEFAULT);          // Decode CT from Base64
+            final File dir = envelopeDir();
+            final SharedPreferences legacy = requireContext()
+                    .getSharedPreferences(PREFS, Context.MODE_PRIVATE); // Legacy prefs handle; read lazily on the worker
+            CryptoJobScheduler.shared()
+                    .submit("decrypt", ENVELOPE_LANE, Priority.INTERACTIVE, () -> decrypt(dir, legacy)) // Repeated clicks share one job
+                    .whenCompleteAsync((pt, e) -> {
+                        if (e == null) {
+                            if (pt == null) out.setText(R.string.encrypt_first);        // Nothing to decrypt yet
+                            else out.setText(getString(R.string.plain_text, pt));       // Display plaintext
+                            return;
+                        }
+                        Throwable cause = unwrap(e);                                 // Counted by the failing step
+                        if (cause instanceof javax.crypto.AEADBadTagException) {      // Wrong key/IV/AAD or tampering
+                            out.setText(getString(
+                                    R.string.decrypt_failed,
+                                    "Authentication failed (tampered data / wrong key or AAD)."));
+                        } else {                                                     // Any other error during decrypt
+                            out.setText(getString(R.string.decrypt_failed, cause.toString()));
                         }
-                    }
-
-                    if (lastIv == null || lastCt == null) {          // Nothing to decrypt yet
-                        postToUi(() -> out.setText(R.string.encrypt_first)); // Prompt user to encrypt first
-                        return;                                       // Abort
-                    }
-
-                    SecretKey key = ensureKey();                     // Retrieve the same Keystore key
-                    Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding"); // Configure cipher again
-                    // On decrypt, you MUST supply the IV and the same tag length used for encrypt.
-                    cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, lastIv)); // 128-bit tag, same IV
-                    // If you used AAD during encrypt, you must provide identical bytes here:
-                    // cipher.updateAAD(CryptoUtils.utf8("user123"));
-
-                    byte[] pt = cipher.doFinal(lastCt);              // Decrypts and verifies tag; throws on auth failure
-                    postToUi(() ->                                  // Back to UI to display plaintext
-                            out.setText(getString(R.string.plain_text, new String(pt))));
-                } catch (javax.crypto.AEADBadTagException e) {       // Tag verification failed – wrong key/IV/AAD or tampering
-                    postToUi(() -> out.setText(getString(
-                            R.string.decrypt_failed,
-                            "Authentication failed (tampered data / wrong key or AAD)."
-                    )));
-                } catch (Exception e) {                               // Any other error during decrypt
-                    postToUi(() -> out.setText(getString(
-                            R.string.decrypt_failed, e.toString())));
-                } finally {
-                    busy.set(false);                                  // Release debounce flag
-                }
-            });
+                    }, this::postToUi);
         });
 
         return v;                                                     // Return the root view for the fragment
     }
 
+    // Runs on a scheduler thread. Returns {ivB64, ctB64} for display.
+    private String[] encrypt(byte[] ptBytes, File dir) throws Exception {
+        SecretKey key = ensureKey();                    // Fetch or create the AES key in AndroidKeyStore
+
+        byte[] body = Compression.maybeDeflate(ptBytes); // Deflate first if a sample says it pays off (text/JSON)
+        int flags = body != null ? Envelope.FLAG_DEFLATE : 0; // Recorded in the authenticated header
+        if (body == null) body = ptBytes;               // Incompressible or tiny: store as is
+
+        long t = CryptoMetrics.start();
+        byte[] ct;
+        byte[] iv;
+        try {
+            Cipher cipher = gcmCipher();                // This thread's reused AES-GCM cipher (no padding)
+            // IMPORTANT: Do NOT supply an IV when encrypting with randomized encryption required.
+            initCipher(cipher, Cipher.ENCRYPT_MODE, key, null); // Initialises for encrypt; Keystore enforces random IV
+            t = CryptoMetrics.lap(Op.CIPHER_INIT, 0, t);
+
+            // Bind the envelope's format fields (version, flags, key version) as AAD;
+            // decrypt must feed the same bytes, which Envelope.authenticatedHeader() rebuilds.
+            cipher.updateAAD(Envelope.authenticatedHeader(flags, KEY_ALIAS, 0, null));
+
+            ct = cipher.doFinal(body);                  // Encrypts and appends 128-bit tag to the output
+            t = CryptoMetrics.lap(Op.AEAD_ENCRYPT, body.length, t);
+            iv = cipher.getIV();                        // Retrieve the fresh, random 12-byte IV used
+        } catch (Exception e) {
+            CryptoMetrics.failure(Op.AEAD_ENCRYPT, e);  // Counted per exception type
+            throw e;
+        }
+        Envelope env = new Envelope(flags, KEY_ALIAS, iv, null, null, 0, ct); // No wrapped DEK: Keystore key
+
+        // Persist results (still off UI thread) so we can decrypt later even after process death
+        try {
+            new EnvelopeStore(dir).put(ENVELOPE_NAME, env); // Atomic binary write, no Base64/XML
+        } catch (IOException e) {
+            CryptoMetrics.failure(Op.STORE_IO, e);      // Disk full, permissions... not a crypto failure
+            throw e;
+        }
+        CryptoMetrics.end(Op.STORE_IO, env.serializedSize(), t);
+
+        remember(env, false);                           // Keep in memory for quick decrypt
+        return new String[]{CryptoUtils.b64(iv), CryptoUtils.b64(ct)}; // Base64 only for display
+    }
+
+    // Runs on a scheduler thread. Returns the plaintext, or null if nothing has been encrypted yet.
+    private String decrypt(File dir, SharedPreferences legacyPrefs) throws Exception {
+        Envelope env;
+        boolean legacy;
+        synchronized (stateLock) {                      // Snapshot the in-memory copy
+            env = last;
+            legacy = lastIsLegacy;
+        }
+        if (env == null) {                              // Restore it from the envelope store
+            long t = CryptoMetrics.start();
+            try {
+                env = new EnvelopeStore(dir).get(ENVELOPE_NAME); // Binary envelope written by encrypt
+            } catch (IOException e) {
+                CryptoMetrics.failure(Op.STORE_IO, e);  // Unreadable or corrupt envelope file
+                throw e;
+            }
+            legacy = false;
+            CryptoMetrics.end(Op.STORE_IO, env == null ? 0 : env.serializedSize(), t);
+        }
+        if (env == null) {                              // Data encrypted before envelopes existed
+            String ivB64 = legacyPrefs.getString(PREF_IV, null);  // Read stored IV
+            String ctB64 = legacyPrefs.getString(PREF_CT, null);  // Read stored CT
+            if (ivB64 != null && ctB64 != null) {
+                env = new Envelope(0, KEY_ALIAS,
+                        Base64.decode(ivB64, Base64.DEFAULT),     // Decode IV from Base64
+                        null, null, 0,
+                        Base64.decode(ctB64, Base64.DEFAULT));    // Decode CT from Base64
+                legacy = true;                                    // Encrypted without AAD
+            }
+        }
+        if (env == null) return null;                   // Nothing to decrypt yet
+        remember(env, legacy);
+
+        SecretKey key = ensureKey();                    // Retrieve the same Keystore key
+        long t = CryptoMetrics.start();
+        byte[] pt;
+        try {
+            Cipher cipher = gcmCipher();                // Same reused cipher, re-initialised below
+            // On decrypt, you MUST supply the IV and the same tag length used for encrypt.
+            initCipher(cipher, Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, env.iv())); // 128-bit tag, same IV
+            t = CryptoMetrics.lap(Op.CIPHER_INIT, 0, t);
+            // AAD used during encrypt must be provided byte-for-byte here:
+            if (!legacy) cipher.updateAAD(env.authenticatedHeader());
+
+            pt = cipher.doFinal(env.ciphertextBytes()); // Decrypts and verifies tag; throws on auth failure
+        } catch (Exception e) {
+            CryptoMetrics.failure(Op.AEAD_DECRYPT, e);  // Includes AEADBadTagException (tampering/wrong key)
+            throw e;
+        }
+        CryptoMetrics.end(Op.AEAD_DECRYPT, pt.length, t);
+        if ((env.flags() & Envelope.FLAG_DEFLATE) != 0) {
+            pt = Compression.inflate(pt, MAX_INPUT_BYTES);  // Authenticated flag says the plaintext was deflated
+        }
+        return new String(pt, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    private void remember(Envelope env, boolean legacy) { // Publish the latest envelope to other job threads
+        synchronized (stateLock) {
+            last = env;
+            lastIsLegacy = legacy;
+        }
+    }
+
     private void postToUi(Runnable r) {           // Helper to post work back to the main thread safely
         if (isAdded()) main.post(r);              // Only post if fragment is attached to its activity
     }
 
-    @Override
-    public void onDestroy() {                     // Fragment is being destroyed
-        super.onDestroy();                        // Call base implementation
-        cryptoExec.shutdownNow();                 // Stop background executor to avoid leaks
+    private static String encryptJobKey(byte[] ptBytes) { // Digest, so the static scheduler never holds the plaintext
+        try {
+            return "encrypt:" + CryptoUtils.b64(MessageDigest.getInstance("SHA-256").digest(ptBytes));
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);   // SHA-256 is mandatory on every platform
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) { // CompletableFuture may wrap the job's exception
+        return e instanceof java.util.concurrent.CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private File envelopeDir() {                  // Envelope files under the app's private dir
+        return new File(requireContext().getFilesDir(), ENVELOPE_DIR);
     }
 
-    private SecretKey ensureKey() throws Exception { // Create or fetch our AES key from AndroidKeyStore
-        KeyStore ks = KeyStore.getInstance("AndroidKeyStore"); // Get a handle to the platform keystore
-        ks.load(null);                                         // Load default keystore
-        Key key = ks.getKey(KEY_ALIAS, null);                  // Try to retrieve an existing key by alias
-        if (key instanceof SecretKey) return (SecretKey) key;  // If present, return it
-
-        KeyGenerator kg = KeyGenerator.getInstance(KEY_ALGORITHM_AES, "AndroidKeyStore"); // Build an AES key generator
-        kg.init(new android.security.keystore.KeyGenParameterSpec.Builder(
-                KEY_ALIAS, PURPOSE_ENCRYPT | PURPOSE_DECRYPT)  // Allow both encrypt and decrypt
-                .setBlockModes(BLOCK_MODE_GCM)                 // Restrict to GCM mode
-                .setEncryptionPaddings(ENCRYPTION_PADDING_NONE) // GCM requires no padding
-                .setRandomizedEncryptionRequired(true)        // Enforce fresh random IV per encryption (no reuse)
-                // .setKeySize(256)                            // Uncomment for 256-bit keys if device supports it
-                .build());
-        return kg.generateKey();                               // Create and store the new key, then return it
+    private static Cipher gcmCipher() throws Exception { // One Keystore-bound cipher per scheduler thread
+        Cipher c = KEYSTORE_GCM.get();
+        if (c == null) {
+            c = Cipher.getInstance("AES/GCM/NoPadding"); // Bound to the Keystore provider on first init
+            KEYSTORE_GCM.set(c);
+        }
+        return c;                                     // Every use re-inits it, so no IV state carries over
+    }
+
+    // Inits with `key`; if the Keystore says it is no longer valid, drops the memoised handle and retries once
+    private static void initCipher(Cipher cipher, int mode, SecretKey key, GCMParameterSpec spec) throws Exception {
+        try {
+            if (spec == null) cipher.init(mode, key);
+            else cipher.init(mode, key, spec);
+        } catch (InvalidKeyException e) {                      // Alias deleted, or invalidated by a lock screen change
+            CryptoMetrics.failure(Op.KEYSTORE_LOAD, e);
+            forgetKey(key, e instanceof KeyPermanentlyInvalidatedException);
+            SecretKey fresh = ensureKey();                     // Reload the alias, or generate a new key
+            if (spec == null) cipher.init(mode, fresh);
+            else cipher.init(mode, fresh, spec);               // A second failure propagates to the caller
+        }
+    }
+
+    private static void forgetKey(SecretKey stale, boolean deleteAlias) throws Exception {
+        synchronized (AesGcmFragment.class) {
+            if (keystoreKey != stale) return;                  // Another job already replaced it
+            keystoreKey = null;                                // Next ensureKey() goes back to the keystore
+            if (deleteAlias) {                                 // Permanently invalid: the alias would hand it back again
+                KeyStore ks = KeyStore.getInstance("AndroidKeyStore");
+                ks.load(null);
+                ks.deleteEntry(KEY_ALIAS);                     // Data sealed under it is unrecoverable either way
+            }
+        }
+    }
+
+    private static SecretKey ensureKey() throws Exception { // Create or fetch our AES key from AndroidKeyStore
+        SecretKey cached = keystoreKey;                        // Fast path: handle already loaded
+        if (cached != null) return cached;
+        synchronized (AesGcmFragment.class) {                  // Jobs run in parallel: create the key only once
+            if (keystoreKey != null) return keystoreKey;
+            try {
+                long t = CryptoMetrics.start();                        // Slow path: time the keystore round trip
+                KeyStore ks = KeyStore.getInstance("AndroidKeyStore"); // Get a handle to the platform keystore
+                ks.load(null);                                         // Load default keystore
+                Key key = ks.getKey(KEY_ALIAS, null);                  // Try to retrieve an existing key by alias
+                CryptoMetrics.end(Op.KEYSTORE_LOAD, 0, t);
+                if (key instanceof SecretKey) return keystoreKey = (SecretKey) key; // If present, memoise and return it
+
+                KeyGenerator kg = KeyGenerator.getInstance(KEY_ALGORITHM_AES, "AndroidKeyStore"); // Build an AES key generator
+                kg.init(new android.security.keystore.KeyGenParameterSpec.Builder(
+                        KEY_ALIAS, PURPOSE_ENCRYPT | PURPOSE_DECRYPT)  // Allow both encrypt and decrypt
+                        .setBlockModes(BLOCK_MODE_GCM)                 // Restrict to GCM mode
+                        .setEncryptionPaddings(ENCRYPTION_PADDING_NONE) // GCM requires no padding
+                        .setRandomizedEncryptionRequired(true)        // Enforce fresh random IV per encryption (no reuse)
+                        // .setKeySize(256)                            // Uncomment for 256-bit keys if device supports it
+                        .build());
+                return keystoreKey = kg.generateKey();                 // Create and store the new key, memoise and return it
+            } catch (Exception e) {
+                CryptoMetrics.failure(Op.KEYSTORE_LOAD, e);            // Keystore unavailable, key invalidated...
+                throw e;
+            }
+        }
     }
 }
 
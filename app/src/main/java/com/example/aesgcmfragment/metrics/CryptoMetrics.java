@@ -0,0 +1,78 @@
+package com.example.aesgcmfragment.metrics;
+
+/**
+ * Static hook for hot-path timing. With no listener installed every call is a volatile read and
+ * a branch; {@link #start()} returns 0 and nothing is timed or allocated.
+ *
+ * <pre>
+ * long t = CryptoMetrics.start();
+ * ... work ...
+ * CryptoMetrics.end(CryptoMetrics.Op.AEAD_ENCRYPT, bytes, t);
+ * </pre>
+ */
+public final class CryptoMetrics {
+    public enum Op {
+        KEYSTORE_LOAD,
+        DEK_GENERATE,
+        CIPHER_INIT,
+        AEAD_ENCRYPT,
+        AEAD_DECRYPT,
+        DEK_WRAP,
+        STORE_IO,
+        QUEUE_WAIT,
+        NET_FETCH_KEY,
+        NET_UPLOAD,
+        NET_UNWRAP
+    }
+
+    /** Receives measurements on the thread that did the work; implementations must be thread-safe and cheap. */
+    public interface Listener {
+        void onLatency(Op op, long bytes, long nanos);
+
+        void onFailure(Op op, Throwable error);
+    }
+
+    private static volatile Listener listener;
+
+    private CryptoMetrics() {}
+
+    /** Installs {@code l}, or disables metrics when {@code l} is null. */
+    public static void setListener(Listener l) {
+        listener = l;
+    }
+
+    public static boolean enabled() {
+        return listener != null;
+    }
+
+    /** Start timestamp, or 0 when disabled. */
+    public static long start() {
+        return listener == null ? 0 : System.nanoTime();
+    }
+
+    /** Records the time since {@code start}; a no-op for a 0 start. */
+    public static void end(Op op, long bytes, long start) {
+        Listener l = listener;
+        if (l != null && start != 0) l.onLatency(op, bytes, System.nanoTime() - start);
+    }
+
+    /** {@link #end} followed by {@link #start}, for timing consecutive phases. */
+    public static long lap(Op op, long bytes, long start) {
+        Listener l = listener;
+        if (l == null || start == 0) return 0;
+        long now = System.nanoTime();
+        l.onLatency(op, bytes, now - start);
+        return now;
+    }
+
+    /** Records a latency measured elsewhere, e.g. queue wait from a submit timestamp. */
+    public static void record(Op op, long bytes, long nanos) {
+        Listener l = listener;
+        if (l != null) l.onLatency(op, bytes, nanos);
+    }
+
+    public static void failure(Op op, Throwable error) {
+        Listener l = listener;
+        if (l != null) l.onFailure(op, error);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.aesgcmfragment.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram in the style of HdrHistogram: each power of two is split into
+ * 16 linear sub-buckets, giving ~6% relative precision over the full {@code long} range in a
+ * fixed 960-slot array. Recording is a few atomic adds and never allocates.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int SLOTS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(index(value));
+        total.increment();
+        sum.add(value);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public double mean() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /** Upper bound of the bucket holding the {@code percentile}-th value (0..100). */
+    public long valueAtPercentile(double percentile) {
+        long n = total.sum();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return highestEquivalent(i);
+        }
+        return highestEquivalent(SLOTS - 1);
+    }
+
+    public long max() {
+        for (int i = SLOTS - 1; i >= 0; i--) {
+            if (counts.get(i) != 0) return highestEquivalent(i);
+        }
+        return 0;
+    }
+
+    public void reset() {
+        for (int i = 0; i < SLOTS; i++) counts.set(i, 0);
+        total.reset();
+        sum.reset();
+    }
+
+    static int index(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        int mag = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (mag - SUB_BITS)) & (SUB_COUNT - 1);
+        return (mag - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < SUB_COUNT) return index;
+        int mag = index / SUB_COUNT + SUB_BITS - 1;
+        int sub = index % SUB_COUNT;
+        long lower = (long) (SUB_COUNT + sub) << (mag - SUB_BITS);
+        return lower + (1L << (mag - SUB_BITS)) - 1;
+    }
+}
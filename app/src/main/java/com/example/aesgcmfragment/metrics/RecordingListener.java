@@ -0,0 +1,79 @@
+package com.example.aesgcmfragment.metrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link CryptoMetrics.Listener}: a latency histogram per operation and payload-size
+ * bucket, byte counters per operation, and failure counters per operation and exception type
+ * (so {@code AEADBadTagException} shows up separately from I/O errors).
+ */
+public final class RecordingListener implements CryptoMetrics.Listener {
+    /** Payload buckets: <1 KiB, <16 KiB, <256 KiB, <4 MiB, >=4 MiB. */
+    public static final String[] SIZE_BUCKETS = {"<1K", "<16K", "<256K", "<4M", ">=4M"};
+
+    private final Map<CryptoMetrics.Op, LatencyHistogram[]> latencies = new EnumMap<>(CryptoMetrics.Op.class);
+    private final Map<CryptoMetrics.Op, LongAdder> bytes = new EnumMap<>(CryptoMetrics.Op.class);
+    private final ConcurrentHashMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    public RecordingListener() {
+        for (CryptoMetrics.Op op : CryptoMetrics.Op.values()) {
+            LatencyHistogram[] h = new LatencyHistogram[SIZE_BUCKETS.length];
+            for (int i = 0; i < h.length; i++) h[i] = new LatencyHistogram();
+            latencies.put(op, h);
+            bytes.put(op, new LongAdder());
+        }
+    }
+
+    @Override public void onLatency(CryptoMetrics.Op op, long n, long nanos) {
+        latencies.get(op)[sizeBucket(n)].record(nanos);
+        bytes.get(op).add(n);
+    }
+
+    @Override public void onFailure(CryptoMetrics.Op op, Throwable error) {
+        failures.computeIfAbsent(op + "/" + error.getClass().getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    public LatencyHistogram latency(CryptoMetrics.Op op, int sizeBucket) {
+        return latencies.get(op)[sizeBucket];
+    }
+
+    public long bytes(CryptoMetrics.Op op) {
+        return bytes.get(op).sum();
+    }
+
+    /** Failures of {@code op} whose exception's simple class name is {@code type}. */
+    public long failures(CryptoMetrics.Op op, String type) {
+        LongAdder a = failures.get(op + "/" + type);
+        return a == null ? 0 : a.sum();
+    }
+
+    static int sizeBucket(long n) {
+        if (n < 1024) return 0;
+        if (n < 16 * 1024) return 1;
+        if (n < 256 * 1024) return 2;
+        if (n < 4 * 1024 * 1024) return 3;
+        return 4;
+    }
+
+    /** One line per non-empty (op, size) cell with count, p50/p99/max in microseconds, then failures. */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<CryptoMetrics.Op, LatencyHistogram[]> e : latencies.entrySet()) {
+            LatencyHistogram[] h = e.getValue();
+            for (int i = 0; i < h.length; i++) {
+                if (h[i].count() == 0) continue;
+                sb.append(String.format(Locale.US, "%s %s n=%d p50=%.1fus p99=%.1fus max=%.1fus%n",
+                        e.getKey(), SIZE_BUCKETS[i], h[i].count(),
+                        h[i].valueAtPercentile(50) / 1e3, h[i].valueAtPercentile(99) / 1e3, h[i].max() / 1e3));
+            }
+        }
+        for (Map.Entry<String, LongAdder> e : failures.entrySet()) {
+            sb.append("failed ").append(e.getKey()).append(" x").append(e.getValue().sum()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -5,5 +5,8 @@ public interface BackupApi {
     void uploadBackup(String userId, String keyVersion, String ivB64, String ctB64, String wrappedDekB64, String aadB64);
     // For restore: server unwraps DEK and returns raw DEK bytes securely to this device/session
     byte[] requestDekUnwrap(String userId, String keyVersion, String wrappedDekB64);
+
+    // Binary alternative to uploadBackup: one serialised crypto.Envelope (key version, IV, wrapped DEK, AAD, ciphertext)
+    void uploadEnvelope(String userId, byte[] envelope);
 }
 
@@ -0,0 +1,18 @@
+package com.example.aesgcmfragment.net;
+
+/**
+ * Chunked, resumable upload, for servers that support it alongside {@link BackupApi}. The stored
+ * blob is {@code header} followed by chunks 0..chunkCount-1 in order; {@link ChunkedBackupUploader}
+ * sends an Envelope header plus a StreamingAead header, and chunk N is segment N.
+ */
+public interface ChunkedBackupApi {
+    String beginChunkedUpload(String userId, String keyVersion, byte[] header);
+
+    // Idempotent: re-sending an acknowledged chunk with the same bytes is allowed
+    void putChunk(String sessionId, long index, byte[] chunk);
+
+    // Number of contiguous chunks, from 0, the server has durably stored; uploads resume from here
+    long acknowledgedChunks(String sessionId);
+
+    void commitChunkedUpload(String sessionId, long chunkCount);
+}
@@ -0,0 +1,213 @@
+package com.example.aesgcmfragment.net;
+
+import com.example.aesgcmfragment.crypto.Envelope;
+import com.example.aesgcmfragment.crypto.StreamingAead;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipelined, resumable upload of a {@link StreamingAead} ciphertext through the chunked
+ * {@link ChunkedBackupApi} calls. The calling thread encrypts chunk N+1 while an upload worker sends
+ * chunk N; a bounded queue between them applies backpressure so at most
+ * {@code maxQueuedChunks} encrypted segments are held in memory.
+ *
+ * <p>A failed chunk is retried with exponential backoff. If it still fails, {@link #upload}
+ * throws and can be called again with the same {@link Session}. It then continues from
+ * {@link ChunkedBackupApi#acknowledgedChunks}, re-reading but not re-encrypting or re-sending earlier
+ * chunks. Chunks that were sealed but not acknowledged are kept in the session and re-sent as
+ * they are: a segment index is never sealed twice, because that would reuse a GCM nonce, and a
+ * retry whose plaintext differs from what was sealed fails instead.
+ */
+public final class ChunkedBackupUploader {
+    private final ChunkedBackupApi api;
+    private final Executor uploadExecutor;
+    private final int maxQueuedChunks;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    public ChunkedBackupUploader(ChunkedBackupApi api, Executor uploadExecutor, int maxQueuedChunks, int maxAttempts, long backoffMillis) {
+        if (maxQueuedChunks < 1 || maxAttempts < 1) throw new IllegalArgumentException("maxQueuedChunks and maxAttempts must be >= 1");
+        this.api = api;
+        this.uploadExecutor = uploadExecutor;
+        this.maxQueuedChunks = maxQueuedChunks;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * In-memory state of one upload, including the sealed chunks not yet acknowledged. It cannot
+     * be rebuilt after a process restart, since it is unknown which segments were already sealed;
+     * start a new upload with {@link #begin} instead.
+     */
+    public static final class Session {
+        public final String sessionId;
+        private final SecretKey dek;
+        private final byte[] streamHeader;
+        private final byte[] aad;
+        private final Map<Long, Chunk> unacknowledged = new ConcurrentHashMap<>();
+        private final AtomicLong sealedUpTo = new AtomicLong();   // every index below this has been sealed
+
+        /** {@code aad} is the {@link Envelope#authenticatedHeader()} of the upload's envelope. */
+        Session(String sessionId, SecretKey dek, byte[] streamHeader, byte[] aad) {
+            this.sessionId = sessionId;
+            this.dek = dek;
+            this.streamHeader = streamHeader.clone();
+            this.aad = aad.clone();
+        }
+    }
+
+    /**
+     * Opens a session. The server stores an envelope header (key version, wrapped DEK, AAD,
+     * segment size) followed by the stream header, so the committed blob parses as an
+     * {@link Envelope} whose ciphertext is the stream and whose authenticated header is its AAD.
+     */
+    public Session begin(String userId, String keyVersion, SecretKey dek, byte[] wrappedDek, byte[] aad, int segmentSize) {
+        byte[] streamHeader = StreamingAead.newHeader(segmentSize);
+        Envelope meta = new Envelope(0, keyVersion, null, wrappedDek, aad, segmentSize, null);
+        ByteBuffer header = ByteBuffer.allocate(meta.headerSize() + streamHeader.length);
+        meta.writeHeaderTo(header).put(streamHeader);
+        String sessionId = api.beginChunkedUpload(userId, keyVersion, header.array());
+        return new Session(sessionId, dek, streamHeader, meta.authenticatedHeader());
+    }
+
+    /** Uploads {@code plaintext} from the server's resume point and commits; returns the chunk count. */
+    public long upload(Session session, InputStream plaintext) throws Exception {
+        StreamingAead.SegmentCodec codec = new StreamingAead.SegmentCodec(session.dek, session.streamHeader, session.aad);
+        long acked = api.acknowledgedChunks(session.sessionId);
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(maxQueuedChunks);
+        FutureTask<Void> uploader = new FutureTask<>(() -> {
+            drain(session, queue);
+            return null;
+        });
+        uploadExecutor.execute(uploader);
+        long count;
+        try {
+            count = produce(session, codec, plaintext, acked, queue, uploader);
+            enqueue(queue, Chunk.END, uploader);
+            await(uploader);
+        } finally {
+            uploader.cancel(true);
+        }
+        api.commitChunkedUpload(session.sessionId, count);
+        return count;
+    }
+
+    private long produce(Session session, StreamingAead.SegmentCodec codec, InputStream in, long acked,
+                         BlockingQueue<Chunk> queue, FutureTask<Void> uploader) throws Exception {
+        int seg = codec.segmentSize();
+        byte[] cur = new byte[seg];
+        int curLen = readFully(in, cur);
+        for (long index = 0; ; index++) {
+            byte[] next = null;
+            int nextLen = 0;
+            if (curLen == seg) {                 // a full segment is final only if nothing follows it
+                next = new byte[seg];
+                nextLen = readFully(in, next);
+            }
+            boolean last = nextLen == 0;
+            if (index >= acked) enqueue(queue, sealOnce(session, codec, index, last, cur, curLen), uploader);
+            if (last) return index + 1;
+            cur = next;
+            curLen = nextLen;
+        }
+    }
+
+    /** Returns the chunk sealed for {@code index} on an earlier attempt, or seals it now. */
+    private static Chunk sealOnce(Session session, StreamingAead.SegmentCodec codec, long index, boolean last,
+                                  byte[] pt, int len) throws Exception {
+        byte[] digest = digest(last, pt, len);
+        Chunk sealed = session.unacknowledged.get(index);
+        if (sealed != null) {
+            if (!MessageDigest.isEqual(sealed.digest, digest)) {
+                throw new IllegalStateException("plaintext of chunk " + index + " changed since it was sealed");
+            }
+            return sealed;
+        }
+        if (index < session.sealedUpTo.get()) {
+            throw new IllegalStateException("chunk " + index + " was sent but the server no longer acknowledges it");
+        }
+        Chunk c = new Chunk(index, codec.seal(index, last, pt, 0, len), digest);
+        session.unacknowledged.put(index, c);
+        session.sealedUpTo.set(index + 1);
+        return c;
+    }
+
+    private void drain(Session session, BlockingQueue<Chunk> queue) throws InterruptedException {
+        for (Chunk c = queue.take(); c != Chunk.END; c = queue.take()) {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    api.putChunk(session.sessionId, c.index, c.data);
+                    session.unacknowledged.remove(c.index);
+                    break;
+                } catch (RuntimeException e) {
+                    if (attempt >= maxAttempts) throw e;
+                    Thread.sleep(backoffMillis << (attempt - 1));
+                }
+            }
+        }
+    }
+
+    /** Blocks while the queue is full, but gives up as soon as the upload worker has failed. */
+    private static void enqueue(BlockingQueue<Chunk> queue, Chunk c, FutureTask<Void> uploader) throws Exception {
+        while (!queue.offer(c, 50, TimeUnit.MILLISECONDS)) {
+            if (uploader.isDone()) {
+                await(uploader);
+                throw new IllegalStateException("upload worker stopped");
+            }
+        }
+    }
+
+    private static void await(FutureTask<Void> uploader) throws Exception {
+        try {
+            uploader.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    private static byte[] digest(boolean last, byte[] pt, int len) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update((byte) (last ? 1 : 0));
+        md.update(pt, 0, len);
+        return md.digest();
+    }
+
+    private static int readFully(InputStream in, byte[] b) throws IOException {
+        int n = 0;
+        while (n < b.length) {
+            int r = in.read(b, n, b.length - n);
+            if (r < 0) break;
+            n += r;
+        }
+        return n;
+    }
+
+    private static final class Chunk {
+        static final Chunk END = new Chunk(-1, null, null);
+
+        final long index;
+        final byte[] data;
+        final byte[] digest;   // SHA-256 of last flag || plaintext
+
+        Chunk(long index, byte[] data, byte[] digest) {
+            this.index = index;
+            this.data = data;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.aesgcmfragment.net;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side cache of DEKs unwrapped by {@link BackupApi#requestDekUnwrap}, so a bulk restore
+ * makes one round trip per distinct wrapped DEK instead of one per blob.
+ *
+ * <p>Entries are keyed by {@code (userId, keyVersion, SHA-256(wrappedDek))} and evicted in LRU
+ * order once {@code maxEntries} is reached, or when older than the TTL. Evicted entries and
+ * everything left at {@link #close()} have their key bytes zeroed. Concurrent calls for the same
+ * key wait on a single in-flight request.
+ */
+public final class DekCache implements Closeable {
+    private final BackupApi api;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentHashMap<Key, CompletableFuture<SecretKey>> inFlight = new ConcurrentHashMap<>();
+    private final LinkedHashMap<Key, Entry> entries;   // access order; guarded by this
+    private boolean closed;                            // guarded by this
+
+    public DekCache(BackupApi api, int maxEntries, long ttlMillis) {
+        this(api, maxEntries, ttlMillis, System::nanoTime);
+    }
+
+    DekCache(BackupApi api, int maxEntries, long ttlMillis, LongSupplier nanoClock) {
+        if (maxEntries < 1 || ttlMillis <= 0) throw new IllegalArgumentException("maxEntries and ttlMillis must be > 0");
+        this.api = api;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= DekCache.this.maxEntries) return false;
+                eldest.getValue().destroy();
+                return true;
+            }
+        };
+    }
+
+    private static final class Entry {
+        final byte[] raw;
+        final long expiresAt;
+
+        Entry(byte[] raw, long expiresAt) {
+            this.raw = raw;
+            this.expiresAt = expiresAt;
+        }
+
+        void destroy() {
+            Arrays.fill(raw, (byte) 0);
+        }
+    }
+
+    private static final class Key {
+        final String userId;
+        final String keyVersion;
+        final byte[] wrappedDekHash;
+        final int hash;
+
+        Key(String userId, String keyVersion, byte[] wrappedDekHash) {
+            this.userId = userId;
+            this.keyVersion = keyVersion;
+            this.wrappedDekHash = wrappedDekHash;
+            this.hash = 31 * (31 * userId.hashCode() + keyVersion.hashCode()) + Arrays.hashCode(wrappedDekHash);
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return userId.equals(k.userId) && keyVersion.equals(k.keyVersion) && Arrays.equals(wrappedDekHash, k.wrappedDekHash);
+        }
+
+        @Override public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Returns the unwrapped DEK, from the cache if possible. The returned key holds its own copy of
+     * the key bytes. Failures of the underlying call are rethrown and nothing is cached.
+     */
+    public SecretKey unwrap(String userId, String keyVersion, String wrappedDekB64) throws Exception {
+        Key key = new Key(userId, keyVersion, sha256(wrappedDekB64));
+        SecretKey hit = lookup(key);
+        if (hit != null) return hit;
+
+        CompletableFuture<SecretKey> mine = new CompletableFuture<>();
+        CompletableFuture<SecretKey> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) return copy(await(running));   // each caller gets its own key object
+        try {
+            SecretKey dek = lookup(key);             // a previous leader may have finished in between
+            if (dek == null) dek = fetch(key, userId, keyVersion, wrappedDekB64);
+            mine.complete(dek);
+            return dek;
+        } catch (Exception | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Zeroes and drops every cached DEK; later {@link #unwrap} calls fail. */
+    @Override public synchronized void close() {
+        closed = true;
+        for (Entry e : entries.values()) e.destroy();
+        entries.clear();
+    }
+
+    private SecretKey fetch(Key key, String userId, String keyVersion, String wrappedDekB64) {
+        byte[] raw = api.requestDekUnwrap(userId, keyVersion, wrappedDekB64);
+        try {
+            SecretKey dek = new SecretKeySpec(raw, "AES");   // copies raw
+            synchronized (this) {
+                if (!closed) {
+                    purgeExpired();
+                    entries.put(key, new Entry(raw.clone(), nanoClock.getAsLong() + ttlNanos));
+                }
+            }
+            return dek;
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+    }
+
+    private synchronized SecretKey lookup(Key key) {
+        if (closed) throw new IllegalStateException("DEK cache is closed");
+        Entry e = entries.get(key);
+        if (e == null) return null;
+        if (nanoClock.getAsLong() - e.expiresAt >= 0) {
+            entries.remove(key);
+            e.destroy();
+            purgeExpired();
+            return null;
+        }
+        return new SecretKeySpec(e.raw, "AES");
+    }
+
+    private void purgeExpired() {
+        long now = nanoClock.getAsLong();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry e = it.next();
+            if (now - e.expiresAt >= 0) {
+                it.remove();
+                e.destroy();
+            }
+        }
+    }
+
+    private static SecretKey copy(SecretKey key) {
+        byte[] raw = key.getEncoded();
+        try {
+            return new SecretKeySpec(raw, "AES");
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+    }
+
+    private static SecretKey await(CompletableFuture<SecretKey> f) throws Exception {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    private static byte[] sha256(String s) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.aesgcmfragment.net;
+
+import com.example.aesgcmfragment.metrics.CryptoMetrics;
+import com.example.aesgcmfragment.metrics.CryptoMetrics.Op;
+
+/** Decorator that reports the latency, payload size and failures of every {@link BackupApi} call. */
+public final class InstrumentedBackupApi implements BackupApi {
+    private final BackupApi delegate;
+
+    public InstrumentedBackupApi(BackupApi delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override public byte[] fetchServerPublicKey() {
+        long t = CryptoMetrics.start();
+        try {
+            byte[] der = delegate.fetchServerPublicKey();
+            CryptoMetrics.end(Op.NET_FETCH_KEY, der == null ? 0 : der.length, t);
+            return der;
+        } catch (RuntimeException e) {
+            CryptoMetrics.failure(Op.NET_FETCH_KEY, e);
+            throw e;
+        }
+    }
+
+    @Override public void uploadBackup(String userId, String keyVersion, String ivB64, String ctB64, String wrappedDekB64, String aadB64) {
+        long t = CryptoMetrics.start();
+        try {
+            delegate.uploadBackup(userId, keyVersion, ivB64, ctB64, wrappedDekB64, aadB64);
+            CryptoMetrics.end(Op.NET_UPLOAD, ctB64 == null ? 0 : ctB64.length(), t);
+        } catch (RuntimeException e) {
+            CryptoMetrics.failure(Op.NET_UPLOAD, e);
+            throw e;
+        }
+    }
+
+    @Override public byte[] requestDekUnwrap(String userId, String keyVersion, String wrappedDekB64) {
+        long t = CryptoMetrics.start();
+        try {
+            byte[] dek = delegate.requestDekUnwrap(userId, keyVersion, wrappedDekB64);
+            CryptoMetrics.end(Op.NET_UNWRAP, 0, t);
+            return dek;
+        } catch (RuntimeException e) {
+            CryptoMetrics.failure(Op.NET_UNWRAP, e);
+            throw e;
+        }
+    }
+
+    @Override public void uploadEnvelope(String userId, byte[] envelope) {
+        long t = CryptoMetrics.start();
+        try {
+            delegate.uploadEnvelope(userId, envelope);
+            CryptoMetrics.end(Op.NET_UPLOAD, envelope.length, t);
+        } catch (RuntimeException e) {
+            CryptoMetrics.failure(Op.NET_UPLOAD, e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.aesgcmfragment.net;
+
+import com.example.aesgcmfragment.metrics.CryptoMetrics;
+import com.example.aesgcmfragment.metrics.CryptoMetrics.Op;
+
+/** {@link InstrumentedBackupApi} for {@link ChunkedBackupApi}: reports every chunk sent. */
+public final class InstrumentedChunkedBackupApi implements ChunkedBackupApi {
+    private final ChunkedBackupApi delegate;
+
+    public InstrumentedChunkedBackupApi(ChunkedBackupApi delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override public String beginChunkedUpload(String userId, String keyVersion, byte[] header) {
+        return delegate.beginChunkedUpload(userId, keyVersion, header);
+    }
+
+    @Override public void putChunk(String sessionId, long index, byte[] chunk) {
+        long t = CryptoMetrics.start();
+        try {
+            delegate.putChunk(sessionId, index, chunk);
+            CryptoMetrics.end(Op.NET_UPLOAD, chunk.length, t);
+        } catch (RuntimeException e) {
+            CryptoMetrics.failure(Op.NET_UPLOAD, e);
+            throw e;
+        }
+    }
+
+    @Override public long acknowledgedChunks(String sessionId) {
+        return delegate.acknowledgedChunks(sessionId);
+    }
+
+    @Override public void commitChunkedUpload(String sessionId, long chunkCount) {
+        delegate.commitChunkedUpload(sessionId, chunkCount);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.aesgcmfragment.store;
+
+import com.example.aesgcmfragment.crypto.Envelope;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * File-backed store of {@link Envelope}s, one file per name, written with NIO channels instead
+ * of SharedPreferences XML. Writes go to a temp file, are fsynced and then renamed over the old
+ * file, so readers see either the previous or the new envelope, never a torn one.
+ */
+public final class EnvelopeStore {
+    private static final String SUFFIX = ".env";
+
+    private final File dir;
+
+    public EnvelopeStore(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+        this.dir = dir;
+    }
+
+    public void put(String name, Envelope envelope) throws IOException {
+        File target = file(name);
+        File tmp = File.createTempFile(target.getName(), ".tmp", dir);   // unique, so concurrent puts never share it
+        ByteBuffer buf = envelope.writeTo(ByteBuffer.allocate(envelope.serializedSize()));
+        buf.flip();
+        try (FileOutputStream fos = new FileOutputStream(tmp); FileChannel ch = fos.getChannel()) {
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("cannot replace " + target);
+        }
+    }
+
+    /** Returns the stored envelope, or null if there is none. */
+    public Envelope get(String name) throws IOException {
+        File f = file(name);
+        if (!f.isFile()) return null;
+        try (FileInputStream fis = new FileInputStream(f); FileChannel ch = fis.getChannel()) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) throw new IOException(f + " is too large");
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf) < 0) throw new IOException("unexpected end of " + f);
+            }
+            buf.flip();
+            return Envelope.parse(buf);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("corrupt envelope " + f, e);
+        }
+    }
+
+    public boolean delete(String name) {
+        return file(name).delete();
+    }
+
+    private File file(String name) {
+        if (name.isEmpty() || name.contains("/") || name.contains("\0") || name.startsWith(".")) {
+            throw new IllegalArgumentException("invalid envelope name: " + name);
+        }
+        return new File(dir, name + SUFFIX);
+    }
+}
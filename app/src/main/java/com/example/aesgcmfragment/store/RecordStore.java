@@ -0,0 +1,400 @@
+package com.example.aesgcmfragment.store;
+
+import com.example.aesgcmfragment.crypto.DekCrypto;
+
+import javax.crypto.SecretKey;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, log-structured store of encrypted records keyed by id.
+ *
+ * <p>{@code records.log} starts with {@code "RLOG" | version(1) | generation(8)} and is followed by
+ * frames {@code "RFRM" | type(1) | idLen(2) | bodyLen(4) | id | body | crc32(4)}, where a PUT body
+ * is {@code iv || ct||tag} sealed with the record id as AAD and a DELETE body is empty. An
+ * in-memory map from id to frame offset makes {@link #get(String)} a single positional read.
+ *
+ * <p>On open the map is loaded from the {@code records.idx} checkpoint (if its generation matches
+ * the log) and the frames appended after it are replayed. A bad frame that runs to the end of the
+ * log is a torn write from a crash and is truncated, but only if no valid frame follows it
+ * anywhere (a corrupted length can make a middle frame look torn). Otherwise the bad frame is
+ * corruption and the open fails instead of dropping the records behind it. Bodies are limited to
+ * {@link #MAX_BODY} bytes. {@link #compact()} copies live frames into a new generation and swaps
+ * it in by rename. Writes are not fsynced individually; call
+ * {@link #sync()} or {@link #checkpoint()} where durability matters. Instances are thread-safe.
+ */
+public final class RecordStore implements Closeable {
+    private static final int LOG_MAGIC = 0x524C4F47;   // "RLOG"
+    private static final int FRAME_MAGIC = 0x5246524D; // "RFRM"
+    private static final int IDX_MAGIC = 0x52494458;   // "RIDX"
+    private static final byte VERSION = 1;
+    private static final int LOG_HEADER_SIZE = 4 + 1 + 8;
+    private static final int FRAME_PREFIX_SIZE = 4 + 1 + 2 + 4;
+    private static final int CRC_SIZE = 4;
+    private static final byte PUT = 1, DELETE = 2;
+    public static final int MAX_BODY = 64 * 1024 * 1024;
+
+    private final File dir;
+    private final File logFile;
+    private final File indexFile;
+    private final SecretKey dek;
+    private final Map<String, Slot> index = new HashMap<>();
+    private RandomAccessFile raf;
+    private FileChannel log;
+    private long generation;
+    private long end;
+    private long liveBytes;
+
+    private static final class Slot {
+        final long offset;
+        final int length;
+
+        Slot(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    public RecordStore(File dir, SecretKey dek) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+        this.dir = dir;
+        this.logFile = new File(dir, "records.log");
+        this.indexFile = new File(dir, "records.idx");
+        this.dek = dek;
+        openLog();
+        recover();
+    }
+
+    public synchronized void put(String id, byte[] plaintext) throws Exception {
+        if (plaintext.length > MAX_BODY - DekCrypto.IV_SIZE - DekCrypto.TAG_SIZE) {
+            throw new IllegalArgumentException("record too large: " + plaintext.length + " bytes");
+        }
+        byte[] iv = DekCrypto.randomIv();
+        byte[] ct = DekCrypto.aeadEncrypt(dek, iv, plaintext, utf8(id));
+        ByteBuffer body = ByteBuffer.allocate(iv.length + ct.length).put(iv).put(ct);
+        append(PUT, id, body.array());
+    }
+
+    /** Returns the decrypted record, or null if absent. Fails if the stored frame was tampered with. */
+    public synchronized byte[] get(String id) throws Exception {
+        Slot slot = index.get(id);
+        if (slot == null) return null;
+        ByteBuffer frame = ByteBuffer.allocate(slot.length);
+        readFully(log, frame, slot.offset);
+        frame.flip();
+        if (!crcMatches(frame)) throw new IOException("corrupt frame for " + id);
+        int idLen = frame.getShort(5) & 0xFFFF;
+        int bodyLen = frame.getInt(7);
+        int bodyOff = FRAME_PREFIX_SIZE + idLen;
+        byte[] iv = new byte[DekCrypto.IV_SIZE];
+        frame.position(bodyOff);
+        frame.get(iv);
+        ByteBuffer ct = frame.slice();
+        ct.limit(bodyLen - DekCrypto.IV_SIZE);
+        ByteBuffer pt = ByteBuffer.allocate(DekCrypto.decryptedSize(ct.remaining()));
+        DekCrypto.aeadDecrypt(dek, iv, ct, ByteBuffer.wrap(utf8(id)), pt);
+        return pt.array();
+    }
+
+    public synchronized boolean contains(String id) {
+        return index.containsKey(id);
+    }
+
+    public synchronized boolean delete(String id) throws IOException {
+        if (!index.containsKey(id)) return false;
+        append(DELETE, id, new byte[0]);
+        return true;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /** Bytes in the log that belong to overwritten or deleted records. */
+    public synchronized long garbageBytes() {
+        return end - LOG_HEADER_SIZE - liveBytes;
+    }
+
+    public synchronized void sync() throws IOException {
+        log.force(false);
+    }
+
+    /** Fsyncs the log and persists the index so the next open only replays later frames. */
+    public synchronized void checkpoint() throws IOException {
+        log.force(false);
+        int size = 4 + 1 + 8 + 8 + 4;
+        List<byte[]> ids = new ArrayList<>(index.size());
+        for (String id : index.keySet()) {
+            byte[] b = utf8(id);
+            ids.add(b);
+            size += 2 + b.length + 8 + 4;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size + CRC_SIZE)
+                .putInt(IDX_MAGIC).put(VERSION).putLong(generation).putLong(end).putInt(index.size());
+        int i = 0;
+        for (Slot slot : index.values()) {
+            byte[] id = ids.get(i++);
+            buf.putShort((short) id.length).put(id).putLong(slot.offset).putInt(slot.length);
+        }
+        buf.putInt(crc(buf.array(), 0, size));
+        buf.flip();
+        writeAtomically(indexFile, buf);
+    }
+
+    /** Rewrites the log with live records only, under a new generation. */
+    public synchronized void compact() throws IOException {
+        File tmp = new File(dir, "records.log.compact");
+        long newGeneration = newGeneration();
+        Map<String, Slot> moved = new HashMap<>(index.size() * 2);
+        boolean written = false;
+        try (FileOutputStream fos = new FileOutputStream(tmp); FileChannel out = fos.getChannel()) {
+            out.write(logHeader(newGeneration));
+            long pos = LOG_HEADER_SIZE;
+            for (Map.Entry<String, Slot> e : index.entrySet()) {
+                Slot slot = e.getValue();
+                for (long done = 0; done < slot.length; ) {
+                    done += log.transferTo(slot.offset + done, slot.length - done, out);
+                }
+                moved.put(e.getKey(), new Slot(pos, slot.length));
+                pos += slot.length;
+            }
+            out.force(true);
+            written = true;
+        } finally {
+            if (!written) tmp.delete();
+        }
+        log.close();
+        raf.close();
+        boolean swapped = false;
+        try {
+            if (!tmp.renameTo(logFile)) throw new IOException("cannot replace " + logFile);
+            swapped = true;
+        } finally {
+            if (!swapped) {
+                tmp.delete();
+                openLog();              // keep serving from the old log; the index still points into it
+            }
+        }
+        index.clear();
+        index.putAll(moved);
+        openLog();
+        checkpoint();
+    }
+
+    @Override public synchronized void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            log.close();
+            raf.close();
+        }
+    }
+
+    private void append(byte type, String id, byte[] body) throws IOException {
+        byte[] idBytes = utf8(id);
+        if (idBytes.length > 0xFFFF) throw new IllegalArgumentException("record id too long");
+        if (body.length > MAX_BODY) throw new IllegalArgumentException("record body too large");
+        int len = FRAME_PREFIX_SIZE + idBytes.length + body.length + CRC_SIZE;
+        ByteBuffer frame = ByteBuffer.allocate(len)
+                .putInt(FRAME_MAGIC).put(type).putShort((short) idBytes.length).putInt(body.length)
+                .put(idBytes).put(body);
+        frame.putInt(crc(frame.array(), 0, len - CRC_SIZE));
+        frame.flip();
+        long offset = end;
+        while (frame.hasRemaining()) log.write(frame, offset + frame.position());
+        end += len;
+        apply(type, id, offset, len);
+    }
+
+    private void apply(byte type, String id, long offset, int len) {
+        Slot old = type == PUT ? index.put(id, new Slot(offset, len)) : index.remove(id);
+        if (old != null) liveBytes -= old.length;
+        if (type == PUT) liveBytes += len;
+    }
+
+    private void openLog() throws IOException {
+        boolean fresh = !logFile.exists() || logFile.length() < LOG_HEADER_SIZE;
+        raf = new RandomAccessFile(logFile, "rw");
+        log = raf.getChannel();
+        if (fresh) {
+            generation = newGeneration();
+            log.truncate(0);
+            log.write(logHeader(generation), 0);
+            log.force(true);
+        } else {
+            ByteBuffer h = ByteBuffer.allocate(LOG_HEADER_SIZE);
+            readFully(log, h, 0);
+            h.flip();
+            if (h.getInt() != LOG_MAGIC || h.get() != VERSION) throw new IOException("not a record log: " + logFile);
+            generation = h.getLong();
+        }
+        end = log.size();
+    }
+
+    private void recover() throws IOException {
+        index.clear();
+        liveBytes = 0;
+        long from = loadCheckpoint();
+        long size = log.size();
+        long pos = from;
+        ByteBuffer prefix = ByteBuffer.allocate(FRAME_PREFIX_SIZE);
+        while (pos + FRAME_PREFIX_SIZE + CRC_SIZE <= size) {   // anything shorter is a torn tail
+            prefix.clear();
+            readFully(log, prefix, pos);
+            byte type = prefix.get(4);
+            int idLen = prefix.getShort(5) & 0xFFFF;
+            int bodyLen = prefix.getInt(7);
+            if (prefix.getInt(0) != FRAME_MAGIC || (type != PUT && type != DELETE) || bodyLen < 0) {
+                if (zeroFilled(pos, size)) break;              // preallocated but never written
+                throw corrupt(pos, "bad frame header");
+            }
+            long len = (long) FRAME_PREFIX_SIZE + idLen + bodyLen + CRC_SIZE;
+            if (bodyLen > MAX_BODY) throw corrupt(pos, "frame body of " + bodyLen + " bytes");
+            if (pos + len > size) break;                       // torn tail: frame runs past EOF
+            ByteBuffer frame = ByteBuffer.allocate((int) len);
+            readFully(log, frame, pos);
+            frame.flip();
+            if (!crcMatches(frame)) {
+                if (pos + len == size) break;                  // torn tail: last frame half-persisted
+                throw corrupt(pos, "CRC mismatch");
+            }
+            byte[] id = new byte[idLen];
+            frame.position(FRAME_PREFIX_SIZE);
+            frame.get(id);
+            apply(type, new String(id, StandardCharsets.UTF_8), pos, (int) len);
+            pos += len;
+        }
+        if (pos < size) {
+            // A bad length can make a middle frame look like a torn tail; only truncate what holds no frame.
+            if (validFrameAfter(pos, size)) throw corrupt(pos, "bad frame before a valid one");
+            log.truncate(pos); // torn or garbage tail from a crash mid-append
+        }
+        end = pos;
+    }
+
+    /** Whether a complete frame with a matching CRC starts anywhere in {@code (from, size)}. */
+    private boolean validFrameAfter(long from, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        for (long base = from + 1; base + FRAME_PREFIX_SIZE + CRC_SIZE <= size; base += buf.limit() - 3) {
+            buf.clear();
+            if (size - base < buf.capacity()) buf.limit((int) (size - base));
+            readFully(log, buf, base);
+            for (int i = 0; i + 4 <= buf.limit(); i++) {
+                if (buf.getInt(i) == FRAME_MAGIC && validFrameAt(base + i, size)) return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean validFrameAt(long pos, long size) throws IOException {
+        if (pos + FRAME_PREFIX_SIZE + CRC_SIZE > size) return false;
+        ByteBuffer prefix = ByteBuffer.allocate(FRAME_PREFIX_SIZE);
+        readFully(log, prefix, pos);
+        byte type = prefix.get(4);
+        int bodyLen = prefix.getInt(7);
+        if ((type != PUT && type != DELETE) || bodyLen < 0 || bodyLen > MAX_BODY) return false;
+        long len = (long) FRAME_PREFIX_SIZE + (prefix.getShort(5) & 0xFFFF) + bodyLen + CRC_SIZE;
+        if (pos + len > size) return false;
+        ByteBuffer frame = ByteBuffer.allocate((int) len);
+        readFully(log, frame, pos);
+        frame.flip();
+        return crcMatches(frame);
+    }
+
+    private IOException corrupt(long pos, String what) {
+        return new IOException(logFile + " is corrupt at offset " + pos + ": " + what + "; data follows, so not truncating");
+    }
+
+    private boolean zeroFilled(long from, long to) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        for (long pos = from; pos < to; ) {
+            buf.clear();
+            if (to - pos < buf.capacity()) buf.limit((int) (to - pos));
+            readFully(log, buf, pos);
+            for (int i = 0; i < buf.limit(); i++) if (buf.get(i) != 0) return false;
+            pos += buf.limit();
+        }
+        return true;
+    }
+
+    /** Loads the checkpoint into {@link #index}; returns the log offset to replay from. */
+    private long loadCheckpoint() {
+        if (!indexFile.isFile()) return LOG_HEADER_SIZE;
+        try (RandomAccessFile f = new RandomAccessFile(indexFile, "r"); FileChannel ch = f.getChannel()) {
+            long size = ch.size();
+            if (size < 4 + 1 + 8 + 8 + 4 + CRC_SIZE || size > Integer.MAX_VALUE) return LOG_HEADER_SIZE;
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            readFully(ch, buf, 0);
+            buf.flip();
+            if (crc(buf.array(), 0, (int) size - CRC_SIZE) != buf.getInt((int) size - CRC_SIZE)) return LOG_HEADER_SIZE;
+            if (buf.getInt() != IDX_MAGIC || buf.get() != VERSION || buf.getLong() != generation) return LOG_HEADER_SIZE;
+            long logEnd = buf.getLong();
+            if (logEnd > log.size()) return LOG_HEADER_SIZE;
+            int n = buf.getInt();
+            for (int i = 0; i < n; i++) {
+                byte[] id = new byte[buf.getShort() & 0xFFFF];
+                buf.get(id);
+                Slot slot = new Slot(buf.getLong(), buf.getInt());
+                index.put(new String(id, StandardCharsets.UTF_8), slot);
+                liveBytes += slot.length;
+            }
+            return logEnd;
+        } catch (IOException | RuntimeException e) {
+            index.clear();
+            liveBytes = 0;
+            return LOG_HEADER_SIZE; // unreadable checkpoint: rebuild from the log
+        }
+    }
+
+    private void writeAtomically(File target, ByteBuffer buf) throws IOException {
+        File tmp = new File(dir, target.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp); FileChannel ch = fos.getChannel()) {
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        if (!tmp.renameTo(target)) throw new IOException("cannot replace " + target);
+    }
+
+    private static ByteBuffer logHeader(long generation) {
+        ByteBuffer h = ByteBuffer.allocate(LOG_HEADER_SIZE).putInt(LOG_MAGIC).put(VERSION).putLong(generation);
+        h.flip();
+        return h;
+    }
+
+    private static long newGeneration() {
+        return ByteBuffer.wrap(DekCrypto.randomIv()).getLong();
+    }
+
+    private static boolean crcMatches(ByteBuffer frame) {
+        int len = frame.limit();
+        return crc(frame.array(), 0, len - CRC_SIZE) == frame.getInt(len - CRC_SIZE);
+    }
+
+    private static int crc(byte[] b, int off, int len) {
+        CRC32 crc = new CRC32();
+        crc.update(b, off, len);
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long pos) throws IOException {
+        long start = pos - dst.position();
+        while (dst.hasRemaining()) {
+            if (ch.read(dst, start + dst.position()) < 0) throw new IOException("unexpected end of file");
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
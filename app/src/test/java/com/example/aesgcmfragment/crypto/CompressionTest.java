@@ -0,0 +1,113 @@
+package com.example.aesgcmfragment.crypto;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+public class CompressionTest {
+    private static final byte[] AAD = "backup-3".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void oneShot_deflatesTextAndSkipsRandomOrTinyData() throws Exception {
+        byte[] json = json(2_000);
+        byte[] deflated = Compression.maybeDeflate(json);
+        assertNotNull(deflated);
+        assertTrue(deflated.length * 3 < json.length);
+        assertArrayEquals(json, Compression.inflate(deflated, json.length));
+
+        assertNull(Compression.maybeDeflate(random(100_000)));
+        assertNull(Compression.maybeDeflate("{\"a\":1}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void textBehindABinaryPrefix_isStillCompressed() {
+        byte[] text = json(3_000);
+        byte[] mixed = new byte[8_192 + text.length];
+        System.arraycopy(random(8_192), 0, mixed, 0, 8_192);
+        System.arraycopy(text, 0, mixed, 8_192, text.length);
+        assertTrue(Compression.worthCompressing(mixed, 0, mixed.length));
+    }
+
+    @Test(expected = IOException.class)
+    public void inflate_refusesOutputPastTheCap() throws Exception {
+        byte[] json = json(2_000);
+        Compression.inflate(Compression.maybeDeflate(json), json.length - 1);
+    }
+
+    @Test
+    public void streaming_compressesTextAndRoundTripsEveryShape() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        int seg = StreamingAead.MIN_SEGMENT_SIZE;
+        for (byte[] pt : new byte[][]{new byte[0], json(3), json(5_000), random(50_000)}) {
+            ByteArrayOutputStream ct = new ByteArrayOutputStream();
+            CompressingEncryptingOutputStream out = StreamingAead.newCompressingStream(dek, ct, AAD, seg);
+            for (int off = 0; off < pt.length; off += 777) out.write(pt, off, Math.min(777, pt.length - off));
+            out.close();
+
+            boolean text = pt.length > 1_000 && pt[0] == '[';
+            assertEquals(text, out.compressed());
+            if (text) assertTrue(ct.size() * 3 < pt.length);
+            try (InputStream in = StreamingAead.newDecompressingStream(dek, new ByteArrayInputStream(ct.toByteArray()), AAD)) {
+                assertArrayEquals(pt, readAll(in));
+            }
+            ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+            new ParallelSegmentCrypto().decrypt(dek, new ByteArrayInputStream(ct.toByteArray()), parallel, AAD);
+            assertArrayEquals(pt, parallel.toByteArray());
+        }
+    }
+
+    @Test
+    public void compressedStream_isRejectedForRandomAccess() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        File file = File.createTempFile("compressed", ".bin");
+        try {
+            try (CompressingEncryptingOutputStream out = StreamingAead.newCompressingStream(
+                    dek, new FileOutputStream(file), AAD, StreamingAead.MIN_SEGMENT_SIZE)) {
+                out.write(json(5_000));
+            }
+            try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                SeekableSegmentDecryptor.open(dek, fc, AAD);
+                fail();
+            } catch (IOException expected) {
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static byte[] json(int records) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < records; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":").append(i).append(",\"name\":\"user-").append(i % 97)
+                    .append("\",\"email\":\"user").append(i % 97).append("@example.com\",\"active\":true}");
+        }
+        return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] random(int n) {
+        byte[] b = new byte[n];
+        new Random(n).nextBytes(b);
+        return b;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        for (int n; (n = in.read(buf)) > 0; ) out.write(buf, 0, n);
+        return out.toByteArray();
+    }
+}
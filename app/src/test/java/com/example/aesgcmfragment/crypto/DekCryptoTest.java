@@ -0,0 +1,120 @@
+package com.example.aesgcmfragment.crypto;
+
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DekCryptoTest {
+    private static final byte[] AAD = "record-7".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void sizeHelpers_matchTheCipher() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        for (int len : new int[]{0, 1, 15, 16, 4_097}) {
+            byte[] ct = DekCrypto.aeadEncrypt(dek, DekCrypto.randomIv(), new byte[len], null);
+            assertEquals(ct.length, DekCrypto.encryptedSize(len));
+            assertEquals(len, DekCrypto.decryptedSize(ct.length));
+        }
+        assertThrows(IllegalArgumentException.class, () -> DekCrypto.decryptedSize(DekCrypto.TAG_SIZE - 1));
+    }
+
+    @Test
+    public void bufferApi_matchesAFreshCipherForHeapAndDirectBuffers() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] pt = random(5_000);
+        for (boolean direct : new boolean[]{false, true}) {
+            byte[] iv = DekCrypto.randomIv();
+            ByteBuffer in = at(3, pt, direct);
+            ByteBuffer aad = at(5, AAD, direct);
+            ByteBuffer ct = allocate(7 + DekCrypto.encryptedSize(pt.length), direct);
+            ct.position(7);
+
+            int n = DekCrypto.aeadEncrypt(dek, iv, in, aad, ct);
+            assertEquals(DekCrypto.encryptedSize(pt.length), n);
+            assertFalse(in.hasRemaining());
+            assertFalse(ct.hasRemaining());
+            ct.position(7);
+            assertArrayEquals(freshCipher(Cipher.ENCRYPT_MODE, dek, iv, pt), bytes(ct.duplicate()));
+
+            ByteBuffer out = allocate(11 + pt.length, direct);
+            out.position(11);
+            assertEquals(pt.length, DekCrypto.aeadDecrypt(dek, iv, ct, at(5, AAD, direct), out));
+            out.position(11);
+            assertArrayEquals(pt, bytes(out));
+        }
+    }
+
+    @Test
+    public void inPlace_roundTripsAtANonZeroPosition() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] pt = random(1_000);
+        for (boolean direct : new boolean[]{false, true}) {
+            byte[] iv = DekCrypto.randomIv();
+            ByteBuffer buf = allocate(9 + DekCrypto.encryptedSize(pt.length), direct);
+            buf.position(9);
+            buf.put(pt);
+            buf.flip().position(9);
+
+            assertEquals(DekCrypto.encryptedSize(pt.length), DekCrypto.aeadEncryptInPlace(dek, iv, buf, ByteBuffer.wrap(AAD)));
+            assertEquals(9, buf.position());
+            assertArrayEquals(freshCipher(Cipher.ENCRYPT_MODE, dek, iv, pt), bytes(buf.duplicate()));
+
+            assertEquals(pt.length, DekCrypto.aeadDecryptInPlace(dek, iv, buf, ByteBuffer.wrap(AAD)));
+            assertEquals(9, buf.position());
+            assertArrayEquals(pt, bytes(buf));
+        }
+    }
+
+    @Test
+    public void tooSmallOutput_throwsShortBufferException() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] pt = random(100);
+        ByteBuffer out = ByteBuffer.allocate(DekCrypto.encryptedSize(pt.length) - 1);
+        assertThrows(ShortBufferException.class,
+                () -> DekCrypto.aeadEncrypt(dek, DekCrypto.randomIv(), ByteBuffer.wrap(pt), null, out));
+
+        ByteBuffer noRoomForTag = ByteBuffer.allocateDirect(pt.length);
+        noRoomForTag.put(pt).flip();
+        assertThrows(ShortBufferException.class,
+                () -> DekCrypto.aeadEncryptInPlace(dek, DekCrypto.randomIv(), noRoomForTag, null));
+    }
+
+    private static byte[] freshCipher(int mode, SecretKey dek, byte[] iv, byte[] in) throws Exception {
+        Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+        c.init(mode, dek, new GCMParameterSpec(128, iv));
+        c.updateAAD(AAD);
+        return c.doFinal(in);
+    }
+
+    /** A buffer holding {@code data} after {@code offset} bytes of junk, positioned at the data. */
+    private static ByteBuffer at(int offset, byte[] data, boolean direct) {
+        ByteBuffer b = allocate(offset + data.length, direct);
+        b.put(random(offset)).put(data).flip();
+        b.position(offset);
+        return b;
+    }
+
+    private static ByteBuffer allocate(int n, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(n) : ByteBuffer.allocate(n);
+    }
+
+    private static byte[] bytes(ByteBuffer b) {
+        byte[] out = new byte[b.remaining()];
+        b.get(out);
+        return out;
+    }
+
+    private static byte[] random(int n) {
+        byte[] b = new byte[n];
+        new Random(n).nextBytes(b);
+        return b;
+    }
+}
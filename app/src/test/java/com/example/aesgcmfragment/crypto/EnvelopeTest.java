@@ -0,0 +1,45 @@
+package com.example.aesgcmfragment.crypto;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+public class EnvelopeTest {
+
+    @Test
+    public void serialiseParse_roundTripsWithoutCopyingCiphertext() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] iv = DekCrypto.randomIv();
+        byte[] aad = "user123".getBytes();
+        byte[] headerAad = Envelope.authenticatedHeader(0, "rsa-2024-10", 0, aad);
+        byte[] ct = DekCrypto.aeadEncrypt(dek, iv, "secret".getBytes(), headerAad);
+        byte[] bytes = new Envelope(0, "rsa-2024-10", iv, new byte[]{9, 9}, aad, 0, ct).toByteArray();
+
+        Envelope parsed = Envelope.parse(bytes);
+        assertEquals("rsa-2024-10", parsed.keyVersion());
+        assertArrayEquals(iv, parsed.iv());
+        assertArrayEquals(new byte[]{9, 9}, parsed.wrappedDek());
+        assertArrayEquals(aad, parsed.aad());
+        assertEquals(bytes.length - parsed.headerSize(), parsed.ciphertext().remaining());
+        assertTrue(parsed.ciphertext().isReadOnly());
+        assertArrayEquals("secret".getBytes(),
+                DekCrypto.aeadDecrypt(dek, parsed.iv(), parsed.ciphertextBytes(), parsed.authenticatedHeader()));
+    }
+
+    @Test
+    public void alteredHeaderField_failsAuthentication() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] iv = DekCrypto.randomIv();
+        byte[] ct = DekCrypto.aeadEncrypt(dek, iv, "secret".getBytes(), Envelope.authenticatedHeader(0, "v1", 0, null));
+        byte[] bytes = new Envelope(0, "v1", iv, null, null, 0, ct).toByteArray();
+        bytes[4] = '2'; // keyVersion "v1" -> "v2"
+
+        Envelope parsed = Envelope.parse(ByteBuffer.wrap(bytes));
+        assertThrows(javax.crypto.AEADBadTagException.class, () ->
+                DekCrypto.aeadDecrypt(dek, parsed.iv(), parsed.ciphertextBytes(), parsed.authenticatedHeader()));
+    }
+}
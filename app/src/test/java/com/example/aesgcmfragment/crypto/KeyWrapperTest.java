@@ -0,0 +1,106 @@
+package com.example.aesgcmfragment.crypto;
+
+import org.junit.Test;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.EllipticCurve;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class KeyWrapperTest {
+
+    @Test
+    public void everyWrapper_roundTripsAndRecordsAlgorithmAndKeyVersion() throws Exception {
+        KeyPair rsa = keyPair("RSA");
+        KeyPair p256 = keyPair("EC");
+        KeyPair x25519 = keyPair("X25519");
+        check(new RsaOaepKeyWrapper("rsa-2024-10", rsa.getPublic().getEncoded()), rsa);
+        check(new EcdhKeyWrapper(EcdhKeyWrapper.Curve.P256, "p256-2025-01", p256.getPublic().getEncoded()), p256);
+        check(new EcdhKeyWrapper(EcdhKeyWrapper.Curve.X25519, "x25519-2025-01", x25519.getPublic().getEncoded()), x25519);
+    }
+
+    @Test
+    public void ecdhWrap_isRandomisedPerCall() throws Exception {
+        KeyPair server = keyPair("EC");
+        KeyWrapper w = new EcdhKeyWrapper(EcdhKeyWrapper.Curve.P256, "v1", server.getPublic().getEncoded());
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] a = w.wrap(dek);
+        byte[] b = w.wrap(dek);
+        assertFalse(Arrays.equals(a, b));
+        assertArrayEquals(dek.getEncoded(), w.unwrap(server.getPrivate(), b).getEncoded());
+    }
+
+    @Test
+    public void tamperedOrMislabelledWrappedDek_isRejected() throws Exception {
+        KeyPair server = keyPair("EC");
+        KeyWrapper v1 = new EcdhKeyWrapper(EcdhKeyWrapper.Curve.P256, "v1", server.getPublic().getEncoded());
+        KeyWrapper v2 = new EcdhKeyWrapper(EcdhKeyWrapper.Curve.P256, "v2", server.getPublic().getEncoded());
+        byte[] wrapped = v1.wrap(DekCrypto.generateDek());
+        try {
+            v2.unwrap(server.getPrivate(), wrapped);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        wrapped[wrapped.length - 1] ^= 1;
+        try {
+            v1.unwrap(server.getPrivate(), wrapped);
+            fail();
+        } catch (AEADBadTagException expected) {
+        }
+    }
+
+    @Test
+    public void otherCurvesWith256BitFields_areNotTakenForP256() throws Exception {
+        KeyPair p256 = keyPair("EC");
+        assertTrue(EcdhKeyWrapper.isP256(((ECPublicKey) p256.getPublic()).getParams()));
+
+        // secp256k1 (SEC 2): same field size as P-256, different curve
+        BigInteger p = new BigInteger(1, hex("fffffffffffffffffffffffffffffffffffffffffffffffffffffffefffffc2f"));
+        ECParameterSpec k1 = new ECParameterSpec(
+                new EllipticCurve(new ECFieldFp(p), BigInteger.ZERO, BigInteger.valueOf(7)),
+                new ECPoint(new BigInteger(1, hex("79be667ef9dcbbac55a06295ce870b07029bfcdb2dce28d959f2815b16f81798")),
+                        new BigInteger(1, hex("483ada7726a3c4655da4fbfc0e1108a8fd17b448a68554199c47d08ffb10d4b8"))),
+                new BigInteger(1, hex("fffffffffffffffffffffffffffffffebaaedce6af48a03bbfd25e8cd0364141")), 1);
+        assertEquals(256, k1.getCurve().getField().getFieldSize());
+        assertFalse(EcdhKeyWrapper.isP256(k1));
+    }
+
+    @Test
+    public void hkdf_matchesRfc5869TestCase1() throws Exception {
+        byte[] ikm = new byte[22];
+        Arrays.fill(ikm, (byte) 0x0b);
+        byte[] okm = EcdhKeyWrapper.hkdfSha256(ikm, hex("000102030405060708090a0b0c"), hex("f0f1f2f3f4f5f6f7f8f9"), 42);
+        assertArrayEquals(hex("3cb25f25faacd57a90434f64d0362f2a2d2d0a90cf1a5a4c5db02d56ecc4c5bf34007208d5b887185865"), okm);
+    }
+
+    private static void check(KeyWrapper w, KeyPair server) throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] wrapped = w.wrap(dek);
+        WrappedDek parsed = WrappedDek.parse(wrapped);
+        assertEquals(w.algorithm(), parsed.algorithm());
+        assertEquals(w.keyVersion(), parsed.keyVersion());
+        assertArrayEquals(dek.getEncoded(), w.unwrap(server.getPrivate(), wrapped).getEncoded());
+    }
+
+    private static KeyPair keyPair(String algorithm) throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance(algorithm);
+        if (algorithm.equals("RSA")) kpg.initialize(2048);
+        if (algorithm.equals("EC")) kpg.initialize(new ECGenParameterSpec("secp256r1"));
+        return kpg.generateKeyPair();
+    }
+
+    private static byte[] hex(String s) {
+        byte[] b = new BigInteger("01" + s, 16).toByteArray();
+        return Arrays.copyOfRange(b, 1, b.length);
+    }
+}
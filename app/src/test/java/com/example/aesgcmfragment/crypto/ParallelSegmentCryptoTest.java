@@ -0,0 +1,69 @@
+package com.example.aesgcmfragment.crypto;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+public class ParallelSegmentCryptoTest {
+    private static final int SEG = StreamingAead.MIN_SEGMENT_SIZE;
+    private static final byte[] AAD = "user123".getBytes();
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+    private final ParallelSegmentCrypto engine = new ParallelSegmentCrypto(pool, 3);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void encrypt_isByteIdenticalToSequentialStream() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        for (int size : new int[]{0, SEG, 10 * SEG, 10 * SEG + 9}) {
+            byte[] pt = randomBytes(size);
+            StreamingAead.Header h = StreamingAead.Header.create(0, SEG);
+
+            ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+            try (OutputStream out = new SegmentEncryptingOutputStream(dek, h, AAD, sequential)) {
+                out.write(pt);
+            }
+            ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+            engine.encrypt(dek, h, new ByteArrayInputStream(pt), parallel, AAD);
+
+            assertArrayEquals("size " + size, sequential.toByteArray(), parallel.toByteArray());
+        }
+    }
+
+    @Test
+    public void decrypt_roundTripsAndRejectsTampering() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] pt = randomBytes(20 * SEG + 3);
+        ByteArrayOutputStream ct = new ByteArrayOutputStream();
+        engine.encrypt(dek, new ByteArrayInputStream(pt), ct, AAD, SEG);
+
+        ByteArrayOutputStream back = new ByteArrayOutputStream();
+        engine.decrypt(dek, new ByteArrayInputStream(ct.toByteArray()), back, AAD);
+        assertArrayEquals(pt, back.toByteArray());
+
+        byte[] tampered = ct.toByteArray();
+        tampered[tampered.length - 1] ^= 1;
+        assertThrows(javax.crypto.AEADBadTagException.class, () ->
+                engine.decrypt(dek, new ByteArrayInputStream(tampered), new ByteArrayOutputStream(), AAD));
+    }
+
+    private static byte[] randomBytes(int n) {
+        byte[] b = new byte[n];
+        new Random(n).nextBytes(b);
+        return b;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.aesgcmfragment.crypto;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.Cipher;
+
+import static org.junit.Assert.*;
+
+public class RecordBatchTest {
+
+    @Test
+    public void encryptUnderOneWrappedDek_thenLookUpSingleRecords() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        KeyPair server = kpg.generateKeyPair();
+
+        List<RecordBatch.Record> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) records.add(new RecordBatch.Record("rec-" + i, utf8("{\"ssn\":\"" + i + "\"}")));
+        RecordBatch batch = RecordBatch.parse(RecordBatch.encrypt(server.getPublic().getEncoded(), records));
+
+        Cipher rsa = Cipher.getInstance("RSA/ECB/OAEPWithSHA-256AndMGF1Padding");
+        rsa.init(Cipher.DECRYPT_MODE, server.getPrivate());
+        byte[] rawDek = rsa.doFinal(batch.wrappedDek());
+
+        assertEquals(100, batch.size());
+        assertArrayEquals(utf8("{\"ssn\":\"42\"}"), batch.decrypt(rawDek, "rec-42"));
+        assertArrayEquals(utf8("{\"ssn\":\"0\"}"), batch.decrypt(rawDek, "rec-0"));
+        assertNull(batch.decrypt(rawDek, "missing"));
+    }
+
+    @Test
+    public void renamedRecord_failsAuthentication() throws Exception {
+        javax.crypto.SecretKey dek = DekCrypto.generateDek();
+        List<RecordBatch.Record> records = new ArrayList<>();
+        records.add(new RecordBatch.Record("a", utf8("alice")));
+        records.add(new RecordBatch.Record("b", utf8("bob")));
+        byte[] env = RecordBatch.encrypt(dek, new byte[0], records);
+
+        // Swap the one-byte ids in the index: "a" <-> "b".
+        int firstId = 1 + RecordBatch.NONCE_PREFIX_SIZE + 2 + 4 + 2;
+        int secondId = firstId + 1 + 4 + 2;
+        env[firstId] = 'b';
+        env[secondId] = 'a';
+        RecordBatch tampered = RecordBatch.parse(env);
+        assertThrows(javax.crypto.AEADBadTagException.class, () -> tampered.decrypt(dek, "a"));
+    }
+
+    @Test
+    public void droppedRecord_failsAuthenticationInsteadOfReadingAsAbsent() throws Exception {
+        javax.crypto.SecretKey dek = DekCrypto.generateDek();
+        List<RecordBatch.Record> records = new ArrayList<>();
+        records.add(new RecordBatch.Record("a", utf8("alice")));
+        records.add(new RecordBatch.Record("b", utf8("bob")));
+        byte[] env = RecordBatch.encrypt(dek, new byte[0], records);
+
+        // Rebuild with count = 1: keep "a"'s index entry, the index tag and ct_a; drop "b" entirely.
+        int countAt = 1 + RecordBatch.NONCE_PREFIX_SIZE + 2;
+        int entry = 2 + 1 + 4;
+        int tagAt = countAt + 4 + 2 * entry;
+        int ctA = DekCrypto.encryptedSize(5);
+        ByteBuffer dropped = ByteBuffer.allocate(countAt + 4 + entry + DekCrypto.TAG_SIZE + ctA)
+                .put(env, 0, countAt)
+                .putInt(1)
+                .put(env, countAt + 4, entry)
+                .put(env, tagAt, DekCrypto.TAG_SIZE + ctA);
+        RecordBatch tampered = RecordBatch.parse(dropped.array());
+        assertEquals(1, tampered.size());
+        assertThrows(javax.crypto.AEADBadTagException.class, () -> tampered.decrypt(dek, "b"));
+        assertThrows(javax.crypto.AEADBadTagException.class, () -> tampered.decrypt(dek, "a"));
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.aesgcmfragment.crypto;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+public class SeekableSegmentDecryptorTest {
+    private static final int SEG = StreamingAead.MIN_SEGMENT_SIZE;
+    private static final byte[] AAD = "blob-7".getBytes();
+
+    private File file;
+    private SecretKey dek;
+    private byte[] pt;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("seekable", ".bin");
+        dek = DekCrypto.generateDek();
+        pt = new byte[7 * SEG + 123];
+        new Random(42).nextBytes(pt);
+        try (OutputStream out = StreamingAead.newEncryptingStream(dek, new FileOutputStream(file), AAD, SEG)) {
+            out.write(pt);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void randomRanges_matchPlaintext() throws Exception {
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             SeekableSegmentDecryptor channel = SeekableSegmentDecryptor.open(dek, fc, AAD);
+             SeekableSegmentDecryptor mapped = SeekableSegmentDecryptor.openMapped(dek, fc, AAD)) {
+            assertEquals(pt.length, channel.size());
+            Random r = new Random(1);
+            for (int i = 0; i < 50; i++) {
+                int pos = r.nextInt(pt.length);
+                int len = r.nextInt(3 * SEG);
+                byte[] expected = Arrays.copyOfRange(pt, pos, Math.min(pt.length, pos + len));
+                assertArrayEquals(expected, channel.read(pos, len));
+                assertArrayEquals(expected, mapped.read(pos, len));
+            }
+        }
+    }
+
+    @Test
+    public void tamperedSegment_failsOnlyWhenRead() throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long off = StreamingAead.HEADER_SIZE + 3L * (SEG + StreamingAead.TAG_SIZE) + 5;
+            raf.seek(off);
+            int b = raf.read();
+            raf.seek(off);
+            raf.write(b ^ 0x80);
+        }
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             SeekableSegmentDecryptor d = SeekableSegmentDecryptor.open(dek, fc, AAD)) {
+            assertArrayEquals(Arrays.copyOfRange(pt, 0, SEG), d.read(0, SEG));
+            assertThrows(javax.crypto.AEADBadTagException.class, () -> d.read(3L * SEG, 10));
+        }
+    }
+}
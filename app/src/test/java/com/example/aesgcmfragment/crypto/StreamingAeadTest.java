@@ -0,0 +1,116 @@
+package com.example.aesgcmfragment.crypto;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+public class StreamingAeadTest {
+    private static final int SEG = StreamingAead.MIN_SEGMENT_SIZE;
+    private static final byte[] AAD = "user123".getBytes();
+
+    @Test
+    public void roundTrip_acrossSegmentBoundaries() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        for (int size : new int[]{0, 1, SEG - 1, SEG, SEG + 1, 3 * SEG, 5 * SEG + 17}) {
+            byte[] pt = randomBytes(size);
+            byte[] ct = encrypt(dek, pt);
+            assertEquals("size " + size, StreamingAead.ciphertextSize(size, SEG), ct.length);
+            assertArrayEquals("size " + size, pt, decrypt(dek, ct, AAD));
+        }
+    }
+
+    @Test
+    public void channels_roundTrip() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] pt = randomBytes(StreamingAead.DEFAULT_SEGMENT_SIZE * 2 + 5);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (WritableByteChannel w = StreamingAead.newEncryptingChannel(dek, Channels.newChannel(sink), AAD)) {
+            w.write(ByteBuffer.wrap(pt));
+        }
+        ByteBuffer back = ByteBuffer.allocate(pt.length);
+        try (ReadableByteChannel r = StreamingAead.newDecryptingChannel(dek,
+                Channels.newChannel(new ByteArrayInputStream(sink.toByteArray())), AAD)) {
+            while (r.read(back) >= 0 && back.hasRemaining()) { /* drain */ }
+        }
+        assertArrayEquals(pt, back.array());
+    }
+
+    @Test
+    public void segments_areSealedUnderAPerStreamSubkey() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] pt = randomBytes(100);
+        StreamingAead.Header h = StreamingAead.Header.read(new ByteArrayInputStream(encrypt(dek, pt)));
+        StreamingAead.Header other = StreamingAead.Header.create(0, SEG);
+        assertFalse(Arrays.equals(dek.getEncoded(), h.streamKey(dek).getEncoded()));
+        assertFalse(Arrays.equals(h.streamKey(dek).getEncoded(), other.streamKey(dek).getEncoded()));
+        assertArrayEquals(h.streamKey(dek).getEncoded(), StreamingAead.Header.parse(ByteBuffer.wrap(h.encode())).streamKey(dek).getEncoded());
+
+        // A segment sealed under the DEK itself (the version 1 scheme) does not open.
+        StreamingAead.SegmentCodec codec = new StreamingAead.SegmentCodec(dek, h.encode(), AAD);
+        byte[] underDek = new byte[pt.length + StreamingAead.TAG_SIZE];
+        StreamingAead.seal(StreamingAead.newCipher(), dek, h, h.segmentAad(AAD), 0, true, pt, 0, pt.length, underDek, 0);
+        assertThrows(javax.crypto.AEADBadTagException.class, () -> codec.open(0, true, underDek, 0, underDek.length));
+    }
+
+    @Test
+    public void versionOneHeader_isRejected() {
+        byte[] h = StreamingAead.Header.create(0, SEG).encode();
+        h[0] = 1;
+        assertThrows(IOException.class, () -> StreamingAead.Header.parse(ByteBuffer.wrap(h)));
+    }
+
+    @Test
+    public void truncationAtSegmentBoundary_isDetected() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] ct = encrypt(dek, randomBytes(3 * SEG));
+        byte[] truncated = Arrays.copyOf(ct, StreamingAead.HEADER_SIZE + 2 * (SEG + StreamingAead.TAG_SIZE));
+        assertThrows(IOException.class, () -> decrypt(dek, truncated, AAD));
+    }
+
+    @Test
+    public void tamperedByteOrWrongAad_isDetected() throws Exception {
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] ct = encrypt(dek, randomBytes(2 * SEG));
+        byte[] flipped = ct.clone();
+        flipped[StreamingAead.HEADER_SIZE + SEG + 40] ^= 1;
+        assertThrows(IOException.class, () -> decrypt(dek, flipped, AAD));
+        assertThrows(IOException.class, () -> decrypt(dek, ct, "other".getBytes()));
+    }
+
+    private static byte[] encrypt(SecretKey dek, byte[] pt) throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (OutputStream out = StreamingAead.newEncryptingStream(dek, sink, AAD, SEG)) {
+            out.write(pt);
+        }
+        return sink.toByteArray();
+    }
+
+    private static byte[] decrypt(SecretKey dek, byte[] ct, byte[] aad) throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (InputStream in = StreamingAead.newDecryptingStream(dek, new ByteArrayInputStream(ct), aad)) {
+            byte[] buf = new byte[777];
+            for (int n; (n = in.read(buf)) >= 0; ) sink.write(buf, 0, n);
+        }
+        return sink.toByteArray();
+    }
+
+    private static byte[] randomBytes(int n) {
+        byte[] b = new byte[n];
+        new Random(n).nextBytes(b);
+        return b;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.aesgcmfragment.jobs;
+
+import com.example.aesgcmfragment.jobs.CryptoJobScheduler.Priority;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CryptoJobSchedulerTest {
+    private final CryptoJobScheduler scheduler = new CryptoJobScheduler(1);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void interactiveJobs_runBeforeQueuedBackgroundJobs() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        scheduler.submit(Priority.BACKGROUND, () -> gate.await(5, TimeUnit.SECONDS));
+        CompletableFuture<?> b1 = scheduler.submit(Priority.BACKGROUND, () -> order.add("backup-1"));
+        CompletableFuture<?> b2 = scheduler.submit(Priority.BACKGROUND, () -> order.add("backup-2"));
+        CompletableFuture<?> d = scheduler.submit(Priority.INTERACTIVE, () -> order.add("decrypt"));
+        gate.countDown();
+        CompletableFuture.allOf(b1, b2, d).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("decrypt", "backup-1", "backup-2"), order);
+    }
+
+    @Test
+    public void duplicateKeys_areMergedIntoOneRun() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.submit(Priority.INTERACTIVE, () -> gate.await(5, TimeUnit.SECONDS));   // keeps the rest queued
+        CompletableFuture<Integer> first = scheduler.submit("encrypt:abc", Priority.INTERACTIVE, runs::incrementAndGet);
+        CompletableFuture<Integer> second = scheduler.submit("encrypt:abc", Priority.INTERACTIVE, runs::incrementAndGet);
+        second.cancel(false); // a merged caller detaching does not cancel the job
+        CompletableFuture<Integer> third = scheduler.submit("encrypt:abc", Priority.INTERACTIVE, runs::incrementAndGet);
+        gate.countDown();
+        assertEquals(Integer.valueOf(1), first.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(1), third.get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+
+        // Once finished, the same key runs again.
+        assertEquals(Integer.valueOf(2), scheduler.submit("encrypt:abc", Priority.INTERACTIVE, runs::incrementAndGet)
+                .get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void startedJobs_areNotJoined() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        CompletableFuture<Integer> running = scheduler.submit("decrypt", Priority.INTERACTIVE, () -> {
+            started.countDown();
+            gate.await(5, TimeUnit.SECONDS);
+            return runs.incrementAndGet();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> later = scheduler.submit("decrypt", Priority.INTERACTIVE, runs::incrementAndGet);
+        gate.countDown();
+        assertEquals(Integer.valueOf(1), running.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(2), later.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void readAfterWriteInALane_seesTheWrite() throws Exception {
+        CryptoJobScheduler wide = new CryptoJobScheduler(4);
+        try {
+            CountDownLatch gate = new CountDownLatch(1);
+            AtomicReference<String> stored = new AtomicReference<>("old");
+            wide.submit(null, "envelope", Priority.INTERACTIVE, () -> gate.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> d1 = wide.submit("decrypt", "envelope", Priority.INTERACTIVE, stored::get);
+            wide.submit("encrypt", "envelope", Priority.INTERACTIVE, () -> stored.getAndSet("new"));
+            CompletableFuture<String> d2 = wide.submit("decrypt", "envelope", Priority.INTERACTIVE, stored::get);
+            CompletableFuture<String> d3 = wide.submit("decrypt", "envelope", Priority.INTERACTIVE, stored::get);
+            gate.countDown();
+            assertEquals("old", d1.get(5, TimeUnit.SECONDS));
+            assertEquals("new", d2.get(5, TimeUnit.SECONDS));
+            assertEquals("new", d3.get(5, TimeUnit.SECONDS));
+        } finally {
+            wide.shutdown();
+        }
+    }
+
+    @Test
+    public void laneJobs_runOneAtATimeInSubmissionOrder() throws Exception {
+        CryptoJobScheduler wide = new CryptoJobScheduler(4);
+        try {
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger overlaps = new AtomicInteger();
+            List<Integer> order = new CopyOnWriteArrayList<>();
+            CompletableFuture<?>[] jobs = new CompletableFuture<?>[20];
+            for (int i = 0; i < jobs.length; i++) {
+                int n = i;
+                jobs[i] = wide.submit(i % 2 == 0 ? "encrypt:" + i : "decrypt", "envelope", Priority.INTERACTIVE, () -> {
+                    if (running.incrementAndGet() > 1) overlaps.incrementAndGet();
+                    Thread.sleep(2);
+                    order.add(n);
+                    running.decrementAndGet();
+                    return null;
+                });
+            }
+            CompletableFuture.allOf(jobs).get(5, TimeUnit.SECONDS);
+            assertEquals(0, overlaps.get());
+            for (int i = 1; i < order.size(); i++) assertTrue(order.get(i - 1) < order.get(i));
+        } finally {
+            wide.shutdown();
+        }
+    }
+
+    @Test
+    public void cancel_skipsQueuedJobAndInterruptsRunningJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger interrupted = new AtomicInteger();
+        CompletableFuture<Object> running = scheduler.submit(Priority.BACKGROUND, () -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+            return null;
+        });
+        AtomicInteger queuedRuns = new AtomicInteger();
+        CompletableFuture<Integer> queued = scheduler.submit(Priority.BACKGROUND, queuedRuns::incrementAndGet);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        queued.cancel(true);
+        running.cancel(true);
+
+        scheduler.submit(Priority.BACKGROUND, () -> null).get(5, TimeUnit.SECONDS);
+        assertEquals(1, interrupted.get());
+        assertEquals(0, queuedRuns.get());
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.aesgcmfragment.metrics;
+
+import com.example.aesgcmfragment.crypto.DekCrypto;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+public class RecordingListenerTest {
+
+    @After
+    public void tearDown() {
+        CryptoMetrics.setListener(null);
+    }
+
+    @Test
+    public void histogram_percentilesWithinBucketPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 10_000; v++) h.record(v * 1000);
+        assertEquals(10_000, h.count());
+        long p50 = h.valueAtPercentile(50);
+        long p99 = h.valueAtPercentile(99);
+        assertTrue("p50=" + p50, Math.abs(p50 - 5_000_000) < 5_000_000 * 0.07);
+        assertTrue("p99=" + p99, Math.abs(p99 - 9_900_000) < 9_900_000 * 0.07);
+        assertTrue(h.max() >= 10_000_000);
+    }
+
+    @Test
+    public void dekCrypto_reportsLatencyBytesAndBadTags() throws Exception {
+        RecordingListener metrics = new RecordingListener();
+        CryptoMetrics.setListener(metrics);
+
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] iv = DekCrypto.randomIv();
+        byte[] ct = DekCrypto.aeadEncrypt(dek, iv, new byte[2048], null);
+        ct[0] ^= 1;
+        assertThrows(javax.crypto.AEADBadTagException.class, () -> DekCrypto.aeadDecrypt(dek, iv, ct, null));
+
+        assertEquals(1, metrics.latency(CryptoMetrics.Op.AEAD_ENCRYPT, 1).count());
+        assertEquals(2048, metrics.bytes(CryptoMetrics.Op.AEAD_ENCRYPT));
+        assertEquals(2, metrics.latency(CryptoMetrics.Op.CIPHER_INIT, 0).count());
+        assertEquals(1, metrics.failures(CryptoMetrics.Op.AEAD_DECRYPT, "AEADBadTagException"));
+    }
+
+    @Test
+    public void disabled_startReturnsZeroAndRecordsNothing() {
+        assertEquals(0, CryptoMetrics.start());
+        CryptoMetrics.end(CryptoMetrics.Op.AEAD_ENCRYPT, 10, 0);
+        assertFalse(CryptoMetrics.enabled());
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.aesgcmfragment.net;
+
+import com.example.aesgcmfragment.crypto.DekCrypto;
+import com.example.aesgcmfragment.crypto.Envelope;
+import com.example.aesgcmfragment.crypto.StreamingAead;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+public class ChunkedBackupUploaderTest {
+    private static final int SEG = StreamingAead.MIN_SEGMENT_SIZE;
+
+    private final ExecutorService uploadExec = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        uploadExec.shutdownNow();
+    }
+
+    @Test
+    public void flakyNetwork_retriesFailedChunksAndCommitsDecryptableBlob() throws Exception {
+        FakeBackupApi api = new FakeBackupApi(1, 0.3);
+        ChunkedBackupUploader uploader = new ChunkedBackupUploader(api, uploadExec, 4, 10, 1);
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] pt = randomBytes(20 * SEG + 11);
+
+        ChunkedBackupUploader.Session s = uploader.begin("u1", "rsa-2024-10", dek, new byte[]{1, 2}, "ctx".getBytes(), SEG);
+        assertEquals(21, uploader.upload(s, new ByteArrayInputStream(pt)));
+
+        assertArrayEquals(pt, restore(dek, api.committedBlob(s.sessionId)));
+    }
+
+    @Test
+    public void droppedConnection_resumesFromLastAcknowledgedChunk() throws Exception {
+        FakeBackupApi api = new FakeBackupApi(0, 0);
+        ChunkedBackupUploader uploader = new ChunkedBackupUploader(api, uploadExec, 2, 2, 1);
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] pt = randomBytes(12 * SEG);
+        ChunkedBackupUploader.Session s = uploader.begin("u1", "rsa-2024-10", dek, new byte[0], null, SEG);
+
+        api.downFromChunk = 7;
+        assertThrows(UncheckedIOException.class, () -> uploader.upload(s, new ByteArrayInputStream(pt)));
+        assertEquals(7, api.acknowledgedChunks(s.sessionId));
+
+        api.downFromChunk = Long.MAX_VALUE;
+        api.putCalls.set(0);
+        assertEquals(12, uploader.upload(s, new ByteArrayInputStream(pt)));
+        assertEquals(5, api.putCalls.get());
+        assertArrayEquals(pt, restore(dek, api.committedBlob(s.sessionId)));
+    }
+
+    @Test
+    public void failedFinalChunk_isResentWithoutResealing() throws Exception {
+        FakeBackupApi api = new FakeBackupApi(0, 0);
+        ChunkedBackupUploader uploader = new ChunkedBackupUploader(api, uploadExec, 2, 2, 1);
+        SecretKey dek = DekCrypto.generateDek();
+        byte[] pt = randomBytes(3 * SEG + 5);
+        ChunkedBackupUploader.Session s = uploader.begin("u1", "rsa-2024-10", dek, new byte[0], null, SEG);
+
+        api.downFromChunk = 3;
+        assertThrows(UncheckedIOException.class, () -> uploader.upload(s, new ByteArrayInputStream(pt)));
+        assertEquals(3, api.acknowledgedChunks(s.sessionId));
+
+        api.downFromChunk = Long.MAX_VALUE;
+        assertEquals(4, uploader.upload(s, new ByteArrayInputStream(pt)));   // same thread, same cached cipher
+        assertArrayEquals(pt, restore(dek, api.committedBlob(s.sessionId)));
+    }
+
+    @Test
+    public void changedPlaintextOnResume_isRefused() throws Exception {
+        FakeBackupApi api = new FakeBackupApi(0, 0);
+        ChunkedBackupUploader uploader = new ChunkedBackupUploader(api, uploadExec, 2, 2, 1);
+        byte[] pt = randomBytes(3 * SEG + 5);
+        ChunkedBackupUploader.Session s = uploader.begin("u1", "rsa-2024-10", DekCrypto.generateDek(), new byte[0], null, SEG);
+
+        api.downFromChunk = 3;
+        assertThrows(UncheckedIOException.class, () -> uploader.upload(s, new ByteArrayInputStream(pt)));
+
+        api.downFromChunk = Long.MAX_VALUE;
+        pt[pt.length - 1] ^= 1;
+        assertThrows(IllegalStateException.class, () -> uploader.upload(s, new ByteArrayInputStream(pt)));
+        assertEquals(3, api.acknowledgedChunks(s.sessionId));
+    }
+
+    private static byte[] restore(SecretKey dek, byte[] blob) throws Exception {
+        Envelope env = Envelope.parse(blob);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = StreamingAead.newDecryptingStream(dek,
+                new ByteArrayInputStream(env.ciphertextBytes()), env.authenticatedHeader())) {
+            byte[] buf = new byte[4096];
+            for (int n; (n = in.read(buf)) >= 0; ) out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int n) {
+        byte[] b = new byte[n];
+        new Random(n).nextBytes(b);
+        return b;
+    }
+}
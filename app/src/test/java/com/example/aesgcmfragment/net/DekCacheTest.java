@@ -0,0 +1,135 @@
+package com.example.aesgcmfragment.net;
+
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class DekCacheTest {
+    /** "Unwraps" by hashing the inputs into 16 bytes, counting calls. */
+    private static final class UnwrapServer implements BackupApi {
+        final AtomicInteger calls = new AtomicInteger();
+        final List<byte[]> returned = new ArrayList<>();
+        volatile CountDownLatch gate;
+
+        @Override public byte[] fetchServerPublicKey() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public void uploadBackup(String userId, String keyVersion, String ivB64, String ctB64, String wrappedDekB64, String aadB64) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public void uploadEnvelope(String userId, byte[] envelope) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public byte[] requestDekUnwrap(String userId, String keyVersion, String wrappedDekB64) {
+            calls.incrementAndGet();
+            try {
+                if (gate != null) gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            byte[] dek = new byte[16];
+            byte[] in = (userId + "|" + keyVersion + "|" + wrappedDekB64).getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < in.length; i++) dek[i % 16] += in[i];
+            synchronized (returned) {
+                returned.add(dek);
+            }
+            return dek;
+        }
+    }
+
+    private final UnwrapServer server = new UnwrapServer();
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void repeatedUnwraps_hitTheServerOncePerDistinctKey() throws Exception {
+        DekCache cache = new DekCache(server, 8, 60_000, now::get);
+        SecretKey a = cache.unwrap("u", "v1", "AAAA");
+        for (int i = 0; i < 10; i++) assertArrayEquals(a.getEncoded(), cache.unwrap("u", "v1", "AAAA").getEncoded());
+        cache.unwrap("u", "v2", "AAAA");
+        cache.unwrap("other", "v1", "AAAA");
+        cache.unwrap("u", "v1", "BBBB");
+        assertEquals(4, server.calls.get());
+        // the server's buffer is not retained
+        assertArrayEquals(new byte[16], server.returned.get(0));
+    }
+
+    @Test
+    public void concurrentRequests_shareOneInFlightCall() throws Exception {
+        DekCache cache = new DekCache(server, 8, 60_000, now::get);
+        server.gate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<SecretKey>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) results.add(pool.submit(() -> cache.unwrap("u", "v1", "AAAA")));
+            Thread.sleep(100);
+            server.gate.countDown();
+            SecretKey first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<SecretKey> f : results.subList(1, results.size())) {
+                SecretKey k = f.get(5, TimeUnit.SECONDS);
+                assertNotSame(first, k);              // followers get their own copy, not the leader's object
+                assertArrayEquals(first.getEncoded(), k.getEncoded());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, server.calls.get());
+    }
+
+    @Test
+    public void expiredAndLeastRecentlyUsedEntries_areEvicted() throws Exception {
+        DekCache cache = new DekCache(server, 2, 1_000, now::get);
+        cache.unwrap("u", "v1", "A");
+        cache.unwrap("u", "v1", "B");
+        cache.unwrap("u", "v1", "A");                 // A is now most recently used
+        cache.unwrap("u", "v1", "C");                 // evicts B
+        assertEquals(3, server.calls.get());
+        cache.unwrap("u", "v1", "A");
+        assertEquals(3, server.calls.get());
+        cache.unwrap("u", "v1", "B");
+        assertEquals(4, server.calls.get());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        cache.unwrap("u", "v1", "B");
+        assertEquals(5, server.calls.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void missesAfterTheTtl_purgeOtherExpiredEntries() throws Exception {
+        DekCache cache = new DekCache(server, 8, 1_000, now::get);
+        cache.unwrap("u", "v1", "A");
+        cache.unwrap("u", "v1", "B");
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        cache.unwrap("u", "v1", "C");                 // a plain miss, not an expired hit
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void close_dropsEntriesAndRejectsFurtherUse() throws Exception {
+        DekCache cache = new DekCache(server, 8, 60_000, now::get);
+        SecretKey dek = cache.unwrap("u", "v1", "AAAA");
+        cache.close();
+        assertEquals(0, cache.size());
+        assertEquals(16, dek.getEncoded().length);    // keys already handed out are independent copies
+        try {
+            cache.unwrap("u", "v1", "AAAA");
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.aesgcmfragment.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** In-process chunked-upload server with simulated latency and failures. */
+final class FakeBackupApi implements ChunkedBackupApi {
+    private final long latencyMillis;
+    private final double failureRate;
+    private final Random random = new Random(7);
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    final AtomicInteger putCalls = new AtomicInteger();
+    /** Every putChunk at or after this index fails while set; simulates a dropped connection. */
+    volatile long downFromChunk = Long.MAX_VALUE;
+
+    private static final class Session {
+        final byte[] header;
+        final TreeMap<Long, byte[]> chunks = new TreeMap<>();
+        byte[] committed;
+
+        Session(byte[] header) {
+            this.header = header;
+        }
+    }
+
+    FakeBackupApi(long latencyMillis, double failureRate) {
+        this.latencyMillis = latencyMillis;
+        this.failureRate = failureRate;
+    }
+
+    @Override public String beginChunkedUpload(String userId, String keyVersion, byte[] header) {
+        String id = userId + "-" + ids.incrementAndGet();
+        sessions.put(id, new Session(header.clone()));
+        return id;
+    }
+
+    @Override public void putChunk(String sessionId, long index, byte[] chunk) {
+        putCalls.incrementAndGet();
+        sleep();
+        boolean fail;
+        synchronized (random) {
+            fail = random.nextDouble() < failureRate;
+        }
+        if (fail || index >= downFromChunk) throw new UncheckedIOException(new IOException("connection reset"));
+        Session s = sessions.get(sessionId);
+        synchronized (s) {
+            s.chunks.put(index, chunk.clone());
+        }
+    }
+
+    @Override public long acknowledgedChunks(String sessionId) {
+        Session s = sessions.get(sessionId);
+        synchronized (s) {
+            long n = 0;
+            while (s.chunks.containsKey(n)) n++;
+            return n;
+        }
+    }
+
+    @Override public void commitChunkedUpload(String sessionId, long chunkCount) {
+        Session s = sessions.get(sessionId);
+        synchronized (s) {
+            if (acknowledgedChunks(sessionId) != chunkCount || s.chunks.size() != chunkCount) {
+                throw new IllegalStateException("missing chunks");
+            }
+            ByteArrayOutputStream blob = new ByteArrayOutputStream();
+            blob.write(s.header, 0, s.header.length);
+            for (byte[] c : s.chunks.values()) blob.write(c, 0, c.length);
+            s.committed = blob.toByteArray();
+        }
+    }
+
+    byte[] committedBlob(String sessionId) {
+        return sessions.get(sessionId).committed;
+    }
+
+    private void sleep() {
+        if (latencyMillis == 0) return;
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.aesgcmfragment.store;
+
+import com.example.aesgcmfragment.crypto.DekCrypto;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+public class RecordStoreTest {
+    private File dir;
+    private SecretKey dek;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("records").toFile();
+        dek = DekCrypto.generateDek();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void putGetDelete_surviveReopenFromCheckpoint() throws Exception {
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            store.put("a", utf8("alice"));
+            store.put("b", utf8("bob"));
+            store.put("a", utf8("alice v2"));
+            assertTrue(store.delete("b"));
+            assertArrayEquals(utf8("alice v2"), store.get("a"));
+            assertNull(store.get("b"));
+        }
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            assertEquals(1, store.size());
+            assertArrayEquals(utf8("alice v2"), store.get("a"));
+        }
+    }
+
+    @Test
+    public void tornTailWrite_isTruncatedOnRecovery() throws Exception {
+        File crashed = Files.createTempDirectory("crashed").toFile();
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            store.put("a", utf8("alice"));
+            store.checkpoint();
+            store.put("b", utf8("bob"));  // only in the log, after the checkpoint
+            store.sync();
+            for (String name : new String[]{"records.log", "records.idx"}) {
+                Files.copy(new File(dir, name).toPath(), new File(crashed, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        long intact = new File(crashed, "records.log").length();
+        try (FileOutputStream out = new FileOutputStream(new File(crashed, "records.log"), true)) {
+            out.write(new byte[]{0x52, 0x46, 0x52, 0x4D, 1, 0, 1}); // half-written frame
+        }
+        try (RecordStore store = new RecordStore(crashed, dek)) {
+            assertArrayEquals(utf8("alice"), store.get("a"));
+            assertArrayEquals(utf8("bob"), store.get("b"));
+            assertEquals(intact, new File(crashed, "records.log").length());
+            store.put("c", utf8("carol"));
+            assertArrayEquals(utf8("carol"), store.get("c"));
+        } finally {
+            for (File f : crashed.listFiles()) f.delete();
+            crashed.delete();
+        }
+    }
+
+    @Test
+    public void compact_dropsGarbageAndKeepsLiveRecords() throws Exception {
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            for (int i = 0; i < 50; i++) store.put("k" + (i % 5), utf8("v" + i));
+            store.delete("k0");
+            assertTrue(store.garbageBytes() > 0);
+            store.compact();
+            assertEquals(0, store.garbageBytes());
+            assertArrayEquals(utf8("v49"), store.get("k4"));
+        }
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            assertEquals(4, store.size());
+            assertArrayEquals(utf8("v46"), store.get("k1"));
+        }
+    }
+
+    @Test
+    public void oversizedRecord_isRejectedInsteadOfBreakingRecovery() throws Exception {
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            store.put("a", utf8("alice"));
+            assertThrows(IllegalArgumentException.class, () -> store.put("big", new byte[RecordStore.MAX_BODY]));
+            store.put("b", utf8("bob"));
+            store.sync();
+        }
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            assertEquals(2, store.size());
+            assertArrayEquals(utf8("bob"), store.get("b"));
+        }
+    }
+
+    @Test
+    public void corruptFrameBeforeValidFrames_failsOpenInsteadOfTruncating() throws Exception {
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            store.put("a", utf8("alice"));
+            store.put("b", utf8("bob"));
+            store.put("c", utf8("carol"));
+        }
+        assertTrue(new File(dir, "records.idx").delete());   // force a full replay
+        File log = new File(dir, "records.log");
+        long size = log.length();
+        flipByte(log, 13 + 20);                              // inside frame "a"
+        try {
+            new RecordStore(dir, dek).close();
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("offset 13"));
+        }
+        assertEquals(size, log.length());
+    }
+
+    @Test
+    public void corruptLengthInMiddleFrame_failsOpenInsteadOfTruncating() throws Exception {
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            store.put("a", utf8("alice"));
+            store.put("b", utf8("bob"));
+            store.put("c", utf8("carol"));
+        }
+        assertTrue(new File(dir, "records.idx").delete());
+        File log = new File(dir, "records.log");
+        long size = log.length();
+        flipByte(log, 13 + 8);                               // frame "a" bodyLen now points past EOF
+        try {
+            new RecordStore(dir, dek).close();
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("offset 13"));
+        }
+        assertEquals(size, log.length());
+    }
+
+    @Test
+    public void corruptLastFrame_isTreatedAsTornTail() throws Exception {
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            store.put("a", utf8("alice"));
+            store.put("b", utf8("bob"));
+        }
+        assertTrue(new File(dir, "records.idx").delete());
+        File log = new File(dir, "records.log");
+        flipByte(log, log.length() - 6);
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            assertArrayEquals(utf8("alice"), store.get("a"));
+            assertFalse(store.contains("b"));
+        }
+    }
+
+    @Test
+    public void wrongKey_failsAuthentication() throws Exception {
+        try (RecordStore store = new RecordStore(dir, dek)) {
+            store.put("a", utf8("alice"));
+        }
+        try (RecordStore store = new RecordStore(dir, DekCrypto.generateDek())) {
+            assertThrows(javax.crypto.AEADBadTagException.class, () -> store.get("a"));
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+    }
+
+    private static void flipByte(File f, long pos) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.seek(pos);
+            int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 0x01);
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,35 @@
+// Pure-JVM JMH benchmarks for the crypto path. Run with:
+//   ./gradlew :benchmarks:jmh
+// Results (ops/s, bytes/s via the Bytes aux counter, gc.alloc.rate.norm) land in
+// benchmarks/build/results/jmh/results.json.
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+// :app is an Android application module and cannot be a JVM dependency, so compile the
+// Android-free crypto (and metrics) sources straight from its source tree.
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/example/aesgcmfragment/crypto/**")
+            include("com/example/aesgcmfragment/metrics/**")
+        }
+    }
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    profilers.add("gc")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    jvmArgs.add("-Xmx2g")
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,55 @@
+package com.example.aesgcmfragment.benchmarks;
+
+import com.example.aesgcmfragment.crypto.DekCrypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+/** One-shot AES-256-GCM through DekCrypto, 64 B to 64 MiB. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AeadBenchmark {
+    @Param({"64", "1024", "16384", "262144", "1048576", "16777216", "67108864"})
+    public int size;
+
+    private SecretKey dek;
+    private byte[] pt;
+    private byte[] aad;
+    private final CounterIv iv = new CounterIv();
+    private byte[] fixedIv;
+    private byte[] ct;
+
+    @Setup
+    public void setUp() throws Exception {
+        dek = DekCrypto.generateDek();
+        pt = new byte[size];
+        new Random(size).nextBytes(pt);
+        aad = "user123".getBytes();
+        fixedIv = DekCrypto.randomIv();
+        ct = DekCrypto.aeadEncrypt(dek, fixedIv, pt, aad);
+    }
+
+    @Benchmark
+    public byte[] encrypt(Bytes bytes) throws Exception {
+        bytes.bytes += size;
+        return DekCrypto.aeadEncrypt(dek, iv.next(), pt, aad);
+    }
+
+    @Benchmark
+    public byte[] decrypt(Bytes bytes) throws Exception {
+        bytes.bytes += size;
+        return DekCrypto.aeadDecrypt(dek, fixedIv, ct, aad);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.aesgcmfragment.benchmarks;
+
+import com.example.aesgcmfragment.crypto.Compression;
+import com.example.aesgcmfragment.crypto.DekCrypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Plain encrypt vs. adaptive deflate-then-encrypt on 64 KiB of JSON and of random bytes. The
+ * Bytes counter is plaintext throughput; compare it with AeadBenchmark to see the CPU cost of
+ * compression, and (random) the cost of the skipped-compression sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompressionBenchmark {
+    @Param({"json", "random"})
+    public String payload;
+
+    private SecretKey dek;
+    private byte[] pt;
+    private final CounterIv iv = new CounterIv();
+
+    @Setup
+    public void setUp() throws Exception {
+        dek = DekCrypto.generateDek();
+        if (payload.equals("json")) {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; sb.length() < 64 * 1024; i++) {
+                sb.append("{\"id\":").append(i).append(",\"name\":\"user-").append(i % 97).append("\",\"active\":true},");
+            }
+            pt = sb.substring(0, 64 * 1024).getBytes(StandardCharsets.UTF_8);
+        } else {
+            pt = new byte[64 * 1024];
+            new Random(1).nextBytes(pt);
+        }
+    }
+
+    @Benchmark
+    public byte[] encrypt(Bytes bytes) throws Exception {
+        bytes.bytes += pt.length;
+        return DekCrypto.aeadEncrypt(dek, iv.next(), pt, null);
+    }
+
+    @Benchmark
+    public byte[] deflateThenEncrypt(Bytes bytes) throws Exception {
+        bytes.bytes += pt.length;
+        byte[] body = Compression.maybeDeflate(pt);
+        return DekCrypto.aeadEncrypt(dek, iv.next(), body != null ? body : pt, null);
+    }
+}
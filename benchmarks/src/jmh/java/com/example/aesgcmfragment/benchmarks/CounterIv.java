@@ -0,0 +1,16 @@
+package com.example.aesgcmfragment.benchmarks;
+
+import com.example.aesgcmfragment.crypto.DekCrypto;
+
+import java.nio.ByteBuffer;
+
+/** IVs for encrypt benchmarks. The cached cipher rejects a repeated key/IV pair, so each call bumps a counter. */
+final class CounterIv {
+    private final byte[] iv = DekCrypto.randomIv();
+    private long counter;
+
+    byte[] next() {
+        ByteBuffer.wrap(iv).putLong(4, ++counter);
+        return iv;
+    }
+}
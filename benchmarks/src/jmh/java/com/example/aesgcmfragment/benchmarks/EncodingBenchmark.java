@@ -0,0 +1,61 @@
+package com.example.aesgcmfragment.benchmarks;
+
+import com.example.aesgcmfragment.crypto.DekCrypto;
+import com.example.aesgcmfragment.crypto.Envelope;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base64 encoding as done by {@code CryptoUtils.b64} versus the binary {@link Envelope}.
+ * {@code android.util.Base64} does not exist off-device, so the JDK encoder (also unwrapped)
+ * stands in for it; the relative cost against the envelope path is what matters here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EncodingBenchmark {
+    @Param({"64", "1024", "16384", "262144", "1048576"})
+    public int size;
+
+    private byte[] ct;
+    private byte[] iv;
+    private byte[] envelopeBytes;
+    private final Base64.Encoder encoder = Base64.getEncoder();
+
+    @Setup
+    public void setUp() {
+        ct = new byte[size + DekCrypto.TAG_SIZE];
+        new Random(size).nextBytes(ct);
+        iv = DekCrypto.randomIv();
+        envelopeBytes = new Envelope(0, "rsa-2024-10", iv, new byte[256], null, 0, ct).toByteArray();
+    }
+
+    @Benchmark
+    public String b64Ciphertext(Bytes bytes) {
+        bytes.bytes += ct.length;
+        return encoder.encodeToString(ct);
+    }
+
+    @Benchmark
+    public byte[] envelopeSerialise(Bytes bytes) {
+        bytes.bytes += ct.length;
+        return new Envelope(0, "rsa-2024-10", iv, new byte[256], null, 0, ct).toByteArray();
+    }
+
+    @Benchmark
+    public Envelope envelopeParse(Bytes bytes) {
+        bytes.bytes += ct.length;
+        return Envelope.parse(envelopeBytes);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.aesgcmfragment.benchmarks;
+
+import com.example.aesgcmfragment.crypto.DekCrypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.security.KeyPairGenerator;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+/** DEK/IV generation and RSA-OAEP-SHA256 wrapping of a DEK. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class KeyBenchmark {
+    @Param({"2048", "3072"})
+    public int rsaBits;
+
+    private byte[] serverPubDer;
+    private SecretKey dek;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(rsaBits);
+        serverPubDer = kpg.generateKeyPair().getPublic().getEncoded();
+        dek = DekCrypto.generateDek();
+    }
+
+    @Benchmark
+    public SecretKey generateDek() throws Exception {
+        return DekCrypto.generateDek();
+    }
+
+    @Benchmark
+    public byte[] randomIv() {
+        return DekCrypto.randomIv();
+    }
+
+    @Benchmark
+    public byte[] wrapDekWithRsaOaep() throws Exception {
+        return DekCrypto.wrapDekWithRsaOaep(serverPubDer, dek);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.aesgcmfragment.benchmarks;
+
+import com.example.aesgcmfragment.crypto.DekCrypto;
+import com.example.aesgcmfragment.crypto.EcdhKeyWrapper;
+import com.example.aesgcmfragment.crypto.KeyWrapper;
+import com.example.aesgcmfragment.crypto.RsaOaepKeyWrapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Client-side wrap and server-side unwrap cost of each {@link KeyWrapper}, to pick the cheaper
+ * one for high-volume backups. {@link Bytes} on {@code wrap} counts wrapped-key bytes, so
+ * bytes/ops is the size each wrapper adds per blob.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class KeyWrapBenchmark {
+    @Param({"rsa-2048", "rsa-3072", "ecdh-p256", "x25519"})
+    public String wrapper;
+
+    private KeyWrapper keyWrapper;
+    private KeyPair server;
+    private SecretKey dek;
+    private byte[] wrapped;
+
+    @Setup
+    public void setUp() throws Exception {
+        switch (wrapper) {
+            case "rsa-2048":
+            case "rsa-3072": {
+                KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+                kpg.initialize(Integer.parseInt(wrapper.substring(4)));
+                server = kpg.generateKeyPair();
+                keyWrapper = new RsaOaepKeyWrapper(wrapper, server.getPublic().getEncoded());
+                break;
+            }
+            case "ecdh-p256": {
+                KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+                kpg.initialize(new ECGenParameterSpec("secp256r1"));
+                server = kpg.generateKeyPair();
+                keyWrapper = new EcdhKeyWrapper(EcdhKeyWrapper.Curve.P256, wrapper, server.getPublic().getEncoded());
+                break;
+            }
+            case "x25519":
+                server = KeyPairGenerator.getInstance("X25519").generateKeyPair();
+                keyWrapper = new EcdhKeyWrapper(EcdhKeyWrapper.Curve.X25519, wrapper, server.getPublic().getEncoded());
+                break;
+            default:
+                throw new IllegalArgumentException(wrapper);
+        }
+        dek = DekCrypto.generateDek();
+        wrapped = keyWrapper.wrap(dek);
+    }
+
+    @Benchmark
+    public byte[] wrap(Bytes bytes) throws Exception {
+        byte[] w = keyWrapper.wrap(dek);
+        bytes.bytes += w.length;
+        return w;
+    }
+
+    @Benchmark
+    public SecretKey unwrap() throws Exception {
+        return keyWrapper.unwrap(server.getPrivate(), wrapped);
+    }
+}